@@ -0,0 +1,67 @@
+import java.util.Arrays;
+
+/**
+ * Min-heap of (tick, bot) events packed into primitive longs, ordered by tick and then by bot index.
+ * Entries are never removed early; callers skip entries that no longer match the bot's current event.
+ */
+public class ArrivalQueue {
+    // Bits reserved for the bot index in the packed entry
+    private static final int BOT_BITS = 24;
+    private static final long BOT_MASK = (1L << BOT_BITS) - 1;
+
+    private long[] heap = new long[16];
+    private int size;
+
+    public void push(long tick, int botIndex) {
+        if (size == heap.length) {
+            heap = Arrays.copyOf(heap, size * 2);
+        }
+        long entry = (tick << BOT_BITS) | botIndex;
+        int i = size++;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (heap[parent] <= entry) {
+                break;
+            }
+            heap[i] = heap[parent];
+            i = parent;
+        }
+        heap[i] = entry;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public long peekTick() {
+        return heap[0] >>> BOT_BITS;
+    }
+
+    public int peekBot() {
+        return (int) (heap[0] & BOT_MASK);
+    }
+
+    public void pop() {
+        long last = heap[--size];
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && heap[child + 1] < heap[child]) {
+                child++;
+            }
+            if (last <= heap[child]) {
+                break;
+            }
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = last;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+}
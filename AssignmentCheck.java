@@ -0,0 +1,189 @@
+import java.util.Random;
+
+/**
+ * Checks the warm repairs of {@link HungarianAssignment} against brute force. Every case solves a
+ * small random problem and then removes, adds and changes columns, rows and single costs at
+ * random; after each step the kept assignment must use distinct active columns, assign as many
+ * rows as possible and cost no more than the optimum plus the solver's own
+ * {@link HungarianAssignment#gapBound()}. Costs are small integers, so ties are common. Prints
+ * every failing case and exits with status 1 if there was one.
+ *
+ * Usage: java AssignmentCheck [--seed N] [--cases N] [--steps N]
+ */
+public class AssignmentCheck {
+    private static final int MAX_ROWS = 6;
+    private static final int MAX_COLS = 6;
+    private static final double EPSILON = 1e-6;
+
+    public static void main(String[] args) {
+        long seed = 1;
+        int cases = 20_000;
+        int steps = 20;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--seed": seed = Long.parseLong(args[++i]); break;
+                case "--cases": cases = Integer.parseInt(args[++i]); break;
+                case "--steps": steps = Integer.parseInt(args[++i]); break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+
+        Random random = new Random(seed);
+        HungarianAssignment solver = new HungarianAssignment(MAX_ROWS, MAX_COLS);
+        int failures = 0;
+        for (int c = 0; c < cases; c++) {
+            String failure = checkCase(solver, random, steps);
+            if (failure != null) {
+                failures++;
+                System.out.println("case " + c + ": " + failure);
+            }
+        }
+        System.out.println(cases + " cases, " + failures + " failures");
+        if (failures > 0) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Runs one random case.
+     *
+     * @return description of the first failed check, or null if all passed.
+     */
+    private static String checkCase(HungarianAssignment solver, Random random, int steps) {
+        int rows = 1 + random.nextInt(MAX_ROWS);
+        int cols = random.nextInt(MAX_COLS + 1);
+        double[][] cost = new double[rows][cols];
+        boolean[] active = new boolean[cols];
+
+        solver.prepare(rows, cols);
+        for (int col = 0; col < cols; col++) {
+            active[col] = random.nextInt(4) != 0;
+            if (!active[col]) {
+                solver.deactivateColumn(col);
+            }
+        }
+        for (int row = 0; row < rows; row++) {
+            for (int col = 0; col < cols; col++) {
+                setCost(solver, cost, row, col, random);
+            }
+        }
+        solver.solve(new int[rows]);
+        String failure = check(solver, cost, active, "solve");
+        for (int step = 0; step < steps && failure == null && cols > 0; step++) {
+            int col = random.nextInt(cols);
+            String operation;
+            switch (random.nextInt(4)) {
+                case 0:
+                    operation = "removeColumn(" + col + ")";
+                    active[col] = false;
+                    solver.removeColumn(col);
+                    break;
+                case 1:
+                    operation = "addColumn(" + col + ")";
+                    if (!active[col]) {
+                        for (int row = 0; row < rows; row++) {
+                            setCost(solver, cost, row, col, random);
+                        }
+                        active[col] = true;
+                    }
+                    solver.addColumn(col);
+                    break;
+                case 2:
+                    int changed = random.nextInt(rows);
+                    // Mostly the row's own column, whose cost dropping is the fast path
+                    int own = solver.assignmentOf(changed);
+                    if (own != -1 && random.nextBoolean()) {
+                        col = own;
+                    }
+                    operation = "updateCost(" + changed + ", " + col + ")";
+                    cost[changed][col] = random.nextInt(10);
+                    solver.updateCost(changed, col, cost[changed][col]);
+                    break;
+                default:
+                    int row = random.nextInt(rows);
+                    operation = "updateRow(" + row + ")";
+                    for (int other = 0; other < cols; other++) {
+                        setCost(solver, cost, row, other, random);
+                    }
+                    solver.updateRow(row);
+                    break;
+            }
+            failure = check(solver, cost, active, operation);
+            if (failure == null && random.nextInt(4) == 0) {
+                solver.tightenFreeColumns();
+                failure = check(solver, cost, active, operation + ", tightenFreeColumns()");
+            }
+        }
+        return failure;
+    }
+
+    private static void setCost(HungarianAssignment solver, double[][] cost, int row, int col, Random random) {
+        cost[row][col] = random.nextInt(10);
+        solver.setCost(row, col, cost[row][col]);
+    }
+
+    /**
+     * Compares the solver's assignment with the brute force optimum.
+     */
+    private static String check(HungarianAssignment solver, double[][] cost, boolean[] active, String operation) {
+        int rows = cost.length;
+        int cols = active.length;
+        boolean[] used = new boolean[cols];
+        int assigned = 0;
+        double total = 0;
+        for (int row = 0; row < rows; row++) {
+            int col = solver.assignmentOf(row);
+            if (col == -1) {
+                continue;
+            }
+            if (!active[col] || used[col]) {
+                return "after " + operation + " row " + row + " got column " + col + ", which is inactive or taken";
+            }
+            used[col] = true;
+            assigned++;
+            total += cost[row][col];
+        }
+
+        int activeCount = 0;
+        for (boolean isActive : active) {
+            if (isActive) {
+                activeCount++;
+            }
+        }
+        int expected = Math.min(rows, activeCount);
+        if (assigned != expected) {
+            return "after " + operation + " " + assigned + " rows assigned, " + expected + " possible";
+        }
+        double optimum = optimum(cost, active, new boolean[cols], 0, expected);
+        if (total < optimum - EPSILON || total > optimum + solver.gapBound() + EPSILON) {
+            return "after " + operation + " cost " + total + ", optimum " + optimum + ", gap bound " + solver.gapBound();
+        }
+        return null;
+    }
+
+    /**
+     * Cheapest way to assign the given number of the rows from row on to distinct active columns.
+     */
+    private static double optimum(double[][] cost, boolean[] active, boolean[] used, int row, int remaining) {
+        if (remaining == 0) {
+            return 0;
+        }
+        if (cost.length - row < remaining) {
+            return Double.MAX_VALUE;
+        }
+        double best = optimum(cost, active, used, row + 1, remaining);
+        for (int col = 0; col < active.length; col++) {
+            if (active[col] && !used[col]) {
+                used[col] = true;
+                double rest = optimum(cost, active, used, row + 1, remaining - 1);
+                if (rest != Double.MAX_VALUE) {
+                    best = Math.min(best, cost[row][col] + rest);
+                }
+                used[col] = false;
+            }
+        }
+        return best;
+    }
+}
@@ -0,0 +1,13 @@
+/**
+ * How the bots of a game pick their coins.
+ */
+public enum AssignmentMode {
+    // Optimal assignment at the start, then the nearest free coin after every collection
+    GREEDY,
+
+    // Optimal assignment at the start, repaired every tick as bots move and coins disappear
+    REOPTIMIZE,
+
+    // Coins split among the bots up front by the fleet router and collected route by route
+    FLEET
+}
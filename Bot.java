@@ -1,12 +0,0 @@
-public class Bot {
-    int x, y;
-    Integer currentTarget; // The index of the currently targeted coin, null if none
-
-
-    public Bot(int x, int y) {
-        this.x = x;
-        this.y = y;
-        this.currentTarget = null; // No target initially
-    }
-    // Getter and setter methods
-}
\ No newline at end of file
@@ -0,0 +1,62 @@
+import java.util.Arrays;
+
+/**
+ * Spatial hash over the bot positions, rebuilt from scratch whenever the bots moved. Cells of a
+ * fixed size are hashed into about two buckets per bot, and a counting sort lists the bots of
+ * every bucket next to each other, so a rebuild is two passes over the bots and allocates nothing.
+ * A bucket can hold the bots of several cells; callers check the positions of what they find.
+ */
+class BotGrid {
+    final int cellSize;
+
+    // Bots sorted by bucket, and where each bucket starts in that order; bucket b ends where b + 1 starts
+    final int[] bucketStart;
+    final int[] sortedBots;
+
+    private final int[] botBucket;
+    private final int mask;
+
+    BotGrid(int botCount, int cellSize) {
+        this.cellSize = cellSize;
+        int buckets = Integer.highestOneBit(Math.max(1, botCount) * 2 - 1) << 1;
+        mask = buckets - 1;
+        bucketStart = new int[buckets + 1];
+        sortedBots = new int[botCount];
+        botBucket = new int[botCount];
+    }
+
+    /**
+     * Counting sort of the bots by bucket.
+     */
+    void rebuild(int[] botX, int[] botY) {
+        int botCount = sortedBots.length;
+        Arrays.fill(bucketStart, 0);
+        for (int i = 0; i < botCount; i++) {
+            int bucket = bucket(cell(botX[i]), cell(botY[i]));
+            botBucket[i] = bucket;
+            bucketStart[bucket + 1]++;
+        }
+        // bucketStart[b + 1] becomes the end of bucket b
+        for (int b = 0; b <= mask; b++) {
+            bucketStart[b + 1] += bucketStart[b];
+        }
+        // Filling each bucket from its end moves bucketStart[b + 1] to the start of bucket b
+        for (int i = botCount - 1; i >= 0; i--) {
+            sortedBots[--bucketStart[botBucket[i] + 1]] = i;
+        }
+        System.arraycopy(bucketStart, 1, bucketStart, 0, mask + 1);
+        bucketStart[mask + 1] = botCount;
+    }
+
+    /**
+     * Cell column or row of a coordinate.
+     */
+    int cell(int coordinate) {
+        return Math.floorDiv(coordinate, cellSize);
+    }
+
+    int bucket(int cellX, int cellY) {
+        int hash = cellX * 0x9E3779B1 + cellY * 0x85EBCA77;
+        return (hash ^ hash >>> 15) & mask;
+    }
+}
@@ -0,0 +1,223 @@
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+
+/**
+ * Uniform grid over the coin positions for nearest-coin queries.
+ * Every cell keeps the indices of the uncollected coins inside it; adding or removing a coin is O(1).
+ * Once most coins are gone the grid is rebuilt with larger cells, so a query that has to look
+ * far, or finds nothing acceptable, never scans many more cells than there are coins left; once
+ * many coins were added it is rebuilt with smaller ones.
+ * Coins at the same distance are ordered by index, so results do not depend on the cell size.
+ */
+public class CoinGrid {
+    // Smallest cell side in pixels, however many coins there are
+    private static final int MIN_CELL_SIZE = 8;
+
+    // Coin positions, read from the world, whose arrays are replaced when coins are added
+    private final WorldState world;
+
+    // Size of the area the coins lie in
+    private final int width, height;
+
+    // Cell size and grid dimensions in cells, the grid starts at (0, 0)
+    private int cellSize, columns, rows;
+
+    // Coin indices of every cell, only the first cellCount[cell] entries are live
+    private int[][] cellCoins;
+    private int[] cellCount;
+
+    // Number of coins in the grid
+    private int size;
+
+    // Cell and position inside the cell of every coin, -1 once the coin is removed
+    private int[] coinCell;
+    private int[] coinSlot;
+
+    // Scratch buffers for queries, so lookups do not allocate
+    private long[] bestDistances = new long[1];
+    private final int[] nearestResult = new int[1];
+
+    /**
+     * Builds the grid over all coins that are not collected yet.
+     *
+     * @param world  the layout, only its coins are used.
+     * @param width  width of the area the coins lie in.
+     * @param height height of the area the coins lie in.
+     */
+    public CoinGrid(WorldState world, int width, int height) {
+        this.world = world;
+        this.width = width;
+        this.height = height;
+        int coinCount = world.coinCount();
+        coinCell = new int[coinCount];
+        coinSlot = new int[coinCount];
+        Arrays.fill(coinCell, -1);
+        resize(world.remainingCoins());
+        for (int i = 0; i < coinCount; i++) {
+            if (!world.isCollected(i)) {
+                add(i);
+            }
+        }
+    }
+
+    /**
+     * Allocates empty cells sized for the given number of coins, about two coins per cell.
+     */
+    private void resize(int coins) {
+        int cells = Math.max(1, coins / 2);
+        cellSize = Math.max(MIN_CELL_SIZE, (int) Math.ceil(Math.sqrt((double) width * height / cells)));
+        columns = width / cellSize + 1;
+        rows = height / cellSize + 1;
+        cellCoins = new int[columns * rows][];
+        cellCount = new int[columns * rows];
+    }
+
+    /**
+     * Rebuilds the cells for the coins still in the grid. Every coin is looked at once, and the
+     * grid only shrinks when the coins left dropped well below the cell count, so the cost is
+     * spread over many removals.
+     */
+    private void rebuild() {
+        resize(size);
+        size = 0;
+        for (int i = 0; i < coinCell.length; i++) {
+            if (coinCell[i] != -1) {
+                coinCell[i] = -1;
+                add(i);
+            }
+        }
+    }
+
+    /**
+     * Adds a coin to the cell that contains it, e.g. a coin added to the world.
+     */
+    public void add(int coinIndex) {
+        if (coinIndex >= coinCell.length) {
+            int length = Math.max(coinIndex + 1, coinCell.length * 2);
+            coinCell = Arrays.copyOf(coinCell, length);
+            coinSlot = Arrays.copyOf(coinSlot, length);
+            Arrays.fill(coinCell, coinIndex, length, -1);
+        }
+        int cell = cellOf(world.coinX[coinIndex], world.coinY[coinIndex]);
+        int[] slots = cellCoins[cell];
+        if (slots == null) {
+            slots = new int[4];
+            cellCoins[cell] = slots;
+        } else if (cellCount[cell] == slots.length) {
+            slots = Arrays.copyOf(slots, slots.length * 2);
+            cellCoins[cell] = slots;
+        }
+        slots[cellCount[cell]] = coinIndex;
+        coinCell[coinIndex] = cell;
+        coinSlot[coinIndex] = cellCount[cell]++;
+        size++;
+        if (size > cellCount.length * 8 && cellSize > MIN_CELL_SIZE) {
+            rebuild();
+        }
+    }
+
+    /**
+     * Removes a coin from the grid, typically because it was collected.
+     */
+    public void remove(int coinIndex) {
+        int cell = coinCell[coinIndex];
+        if (cell == -1) {
+            return;
+        }
+        // Move the last coin of the cell into the freed slot
+        int[] slots = cellCoins[cell];
+        int last = slots[--cellCount[cell]];
+        slots[coinSlot[coinIndex]] = last;
+        coinSlot[last] = coinSlot[coinIndex];
+        coinCell[coinIndex] = -1;
+        size--;
+        if (size > 0 && size * 8 < cellCount.length && cellSize < Math.max(width, height)) {
+            rebuild();
+        }
+    }
+
+    /**
+     * Finds the nearest coin in the grid that the filter accepts.
+     *
+     * @return index of the nearest accepted coin, or -1 if there is none.
+     */
+    public int nearest(int x, int y, IntPredicate accept) {
+        return nearest(x, y, 1, nearestResult, accept) == 0 ? -1 : nearestResult[0];
+    }
+
+    /**
+     * Finds the k nearest coins in the grid that the filter accepts. Rings of cells around the query
+     * point are searched until no unvisited cell can hold a closer coin than the k-th best.
+     *
+     * @param result receives the coin indices, nearest first; must hold at least k entries.
+     * @return number of coins found, at most k.
+     */
+    public int nearest(int x, int y, int k, int[] result, IntPredicate accept) {
+        if (bestDistances.length < k) {
+            bestDistances = new long[k];
+        }
+        int[] coinX = world.coinX, coinY = world.coinY;
+        int found = 0;
+        int centerColumn = clamp(x / cellSize, columns);
+        int centerRow = clamp(y / cellSize, rows);
+        int maxRing = Math.max(columns, rows);
+
+        for (int ring = 0; ring <= maxRing; ring++) {
+            // Every cell of this ring is at least (ring - 1) cells away from the query point
+            if (found == k && ring > 1) {
+                long minDistance = (long) (ring - 1) * cellSize;
+                if (minDistance * minDistance > bestDistances[k - 1]) {
+                    break;
+                }
+            }
+            for (int row = centerRow - ring; row <= centerRow + ring; row++) {
+                if (row < 0 || row >= rows) {
+                    continue;
+                }
+                boolean edgeRow = row == centerRow - ring || row == centerRow + ring;
+                int step = edgeRow ? 1 : 2 * ring;
+                for (int column = centerColumn - ring; column <= centerColumn + ring; column += step) {
+                    if (column < 0 || column >= columns) {
+                        continue;
+                    }
+                    int cell = row * columns + column;
+                    int[] slots = cellCoins[cell];
+                    for (int s = 0; s < cellCount[cell]; s++) {
+                        int coinIndex = slots[s];
+                        if (!accept.test(coinIndex)) {
+                            continue;
+                        }
+                        long distance = DistanceCalculator.calculateSquaredDistance(x, y, coinX[coinIndex], coinY[coinIndex]);
+                        if (found < k || closer(distance, coinIndex, bestDistances[found - 1], result[found - 1])) {
+                            // Insertion into the sorted list of the best k
+                            int position = found < k ? found++ : k - 1;
+                            while (position > 0 && closer(distance, coinIndex, bestDistances[position - 1], result[position - 1])) {
+                                bestDistances[position] = bestDistances[position - 1];
+                                result[position] = result[position - 1];
+                                position--;
+                            }
+                            bestDistances[position] = distance;
+                            result[position] = coinIndex;
+                        }
+                    }
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Whether a coin comes before another in query results: nearer, or as near with a lower index.
+     */
+    private static boolean closer(long distance, int coinIndex, long otherDistance, int otherIndex) {
+        return distance < otherDistance || distance == otherDistance && coinIndex < otherIndex;
+    }
+
+    private int cellOf(int x, int y) {
+        return clamp(y / cellSize, rows) * columns + clamp(x / cellSize, columns);
+    }
+
+    private static int clamp(int value, int size) {
+        return Math.max(0, Math.min(size - 1, value));
+    }
+}
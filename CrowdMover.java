@@ -0,0 +1,236 @@
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Moves bots one step per tick while keeping them apart. Every tick the bot positions are hashed
+ * into a {@link BotGrid} of separation-sized cells, so a bot only looks at the bots in the cells
+ * around it instead of at every other bot, and at no more than {@link #MAX_NEIGHBOURS} of them.
+ *
+ * A bot takes its usual step, sliding along walls as in {@link GameEngine}, unless that brings
+ * it closer than the separation to another bot; then it tries the steps up to 90 degrees to
+ * either side, and otherwise waits. Steps are decided from the positions at the start of the
+ * tick and never from another bot's new position, so every bot is planned on its own: the
+ * result does not depend on the order, and large crowds are planned in parallel chunks on the
+ * common fork-join pool. Two bots can therefore still step onto the same spot in the same tick;
+ * the next ticks spread them out again.
+ *
+ * Side steps alone can leave a bot dancing in front of a bot that stands still on its coin. A bot
+ * that was held back for {@link #PATIENCE} ticks in a row takes its usual step anyway, so every
+ * bot gets where it is going.
+ */
+class CrowdMover {
+    // Smallest distance, per axis, that a bot keeps to other bots. Below the collection distance,
+    // so a bot can still collect a coin another bot stands on
+    static final int SEPARATION = 3;
+
+    // Bots looked at per neighbour query, however dense the crowd
+    static final int MAX_NEIGHBOURS = 32;
+
+    // Ticks in a row a bot gives way before it takes its usual step regardless of the others
+    static final int PATIENCE = 8;
+
+    // Bots planned per fork-join task
+    private static final int CHUNK_SIZE = 2048;
+
+    // The eight step directions in clockwise order
+    private static final int[] DIRECTION_X = {1, 1, 0, -1, -1, -1, 0, 1};
+    private static final int[] DIRECTION_Y = {0, 1, 1, 1, 0, -1, -1, -1};
+
+    // Turns tried when the direct step is too close to another bot, in eighths of a circle
+    private static final int[] TURNS = {1, -1, 2, -2};
+
+    private final int botCount;
+
+    // Result of every move: the new position, and whether it differs from the step without avoidance
+    final int[] newX, newY;
+    final boolean[] deflected;
+
+    // Ticks in a row every bot could not take its usual step because of other bots
+    private final int[] heldTicks;
+
+    // Bot positions at the start of the tick, hashed by separation-sized cells
+    private final BotGrid grid;
+
+    private final LongAdder wallChecks = new LongAdder();
+
+    // Input of the move in progress, read by the tasks
+    private int[] botX, botY, targets, legX, legY;
+    private WallIndex walls;
+
+    CrowdMover(int botCount) {
+        this.botCount = botCount;
+        newX = new int[botCount];
+        newY = new int[botCount];
+        deflected = new boolean[botCount];
+        heldTicks = new int[botCount];
+        grid = new BotGrid(botCount, SEPARATION);
+    }
+
+    /**
+     * Plans one step for every bot into newX, newY and deflected. Nothing passed in is changed.
+     *
+     * @param targets    target coin of every bot; bots with -1 stay where they are.
+     * @param legX, legY point every bot walks to.
+     */
+    void move(int[] botX, int[] botY, int[] targets, int[] legX, int[] legY, WallIndex walls) {
+        this.botX = botX;
+        this.botY = botY;
+        this.targets = targets;
+        this.legX = legX;
+        this.legY = legY;
+        this.walls = walls;
+        grid.rebuild(botX, botY);
+        if (botCount <= CHUNK_SIZE) {
+            planRange(0, botCount);
+        } else {
+            ForkJoinPool.commonPool().invoke(new PlanTask(0, botCount));
+        }
+    }
+
+    /**
+     * Number of steps tested against the walls so far, not counting steps in layouts without walls.
+     */
+    long wallChecks() {
+        return wallChecks.sum();
+    }
+
+    private void planRange(int from, int to) {
+        long checks = 0;
+        for (int i = from; i < to; i++) {
+            checks += plan(i);
+        }
+        if (!walls.isEmpty()) {
+            wallChecks.add(checks);
+        }
+    }
+
+    /**
+     * Picks the step of one bot.
+     *
+     * @return number of wall checks it took.
+     */
+    private int plan(int i) {
+        int x = botX[i], y = botY[i];
+        newX[i] = x;
+        newY[i] = y;
+        deflected[i] = false;
+        int dx = Integer.signum(legX[i] - x), dy = Integer.signum(legY[i] - y);
+        if (targets[i] == -1 || dx == 0 && dy == 0) {
+            heldTicks[i] = 0;
+            return 0;
+        }
+
+        // The step without avoidance, sliding along a wall if the diagonal step is blocked
+        int checks = 1;
+        int freeX = x, freeY = y;
+        if (!walls.blockedConcurrently(x, y, x + dx, y + dy)) {
+            freeX = x + dx;
+            freeY = y + dy;
+        } else {
+            if (dx != 0) {
+                checks++;
+                if (!walls.blockedConcurrently(x, y, x + dx, y)) {
+                    freeX = x + dx;
+                }
+            }
+            if (freeX == x && dy != 0) {
+                checks++;
+                if (!walls.blockedConcurrently(x, y, x, y + dy)) {
+                    freeY = y + dy;
+                }
+            }
+        }
+
+        if (freeX == x && freeY == y) {
+            heldTicks[i] = 0;
+            return checks; // Blocked by walls, not by other bots
+        }
+        if (keepsApart(i, freeX, freeY)) {
+            heldTicks[i] = 0;
+            newX[i] = freeX;
+            newY[i] = freeY;
+            return checks;
+        }
+        if (++heldTicks[i] > PATIENCE) {
+            newX[i] = freeX;
+            newY[i] = freeY;
+            return checks;
+        }
+        int direction = direction(dx, dy);
+        for (int turn : TURNS) {
+            int d = (direction + turn) & 7;
+            int stepX = x + DIRECTION_X[d], stepY = y + DIRECTION_Y[d];
+            checks++;
+            if (!walls.blockedConcurrently(x, y, stepX, stepY) && keepsApart(i, stepX, stepY)) {
+                newX[i] = stepX;
+                newY[i] = stepY;
+                break;
+            }
+        }
+        deflected[i] = newX[i] != freeX || newY[i] != freeY;
+        return checks;
+    }
+
+    /**
+     * Checks that a step brings the bot no closer than the separation to another bot, unless it
+     * was already that close and the step does not make it worse.
+     */
+    private boolean keepsApart(int i, int stepX, int stepY) {
+        int x = botX[i], y = botY[i];
+        int cellX = grid.cell(stepX), cellY = grid.cell(stepY);
+        int seen = 0;
+        for (int cy = cellY - 1; cy <= cellY + 1; cy++) {
+            for (int cx = cellX - 1; cx <= cellX + 1; cx++) {
+                int bucket = grid.bucket(cx, cy);
+                for (int k = grid.bucketStart[bucket], end = grid.bucketStart[bucket + 1]; k < end; k++) {
+                    int j = grid.sortedBots[k];
+                    if (j == i) {
+                        continue;
+                    }
+                    int distance = Math.max(Math.abs(botX[j] - stepX), Math.abs(botY[j] - stepY));
+                    if (distance < SEPARATION && distance < Math.max(Math.abs(botX[j] - x), Math.abs(botY[j] - y))) {
+                        return false;
+                    }
+                    if (++seen == MAX_NEIGHBOURS) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    private static int direction(int dx, int dy) {
+        for (int d = 0; d < 8; d++) {
+            if (DIRECTION_X[d] == dx && DIRECTION_Y[d] == dy) {
+                return d;
+            }
+        }
+        throw new IllegalArgumentException("Not a step: " + dx + ", " + dy);
+    }
+
+    /**
+     * Plans a range of bots, split in halves until it is one chunk.
+     */
+    private class PlanTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int from, to;
+
+        PlanTask(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= CHUNK_SIZE) {
+                planRange(from, to);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new PlanTask(from, middle), new PlanTask(middle, to));
+        }
+    }
+}
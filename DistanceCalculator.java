@@ -1,6 +1,13 @@
 public class DistanceCalculator {
     public static double calculateDistance(int x1, int y1, int x2, int y2) {
         // Calculate Euclidean distance
-        return Math.sqrt(Math.pow(x2 - x1, 2) + Math.pow(y2 - y1, 2));
+        return Math.sqrt(calculateSquaredDistance(x1, y1, x2, y2));
+    }
+
+    public static long calculateSquaredDistance(int x1, int y1, int x2, int y2) {
+        // Squared Euclidean distance, enough for comparisons and free of the square root
+        long dx = x2 - x1;
+        long dy = y2 - y1;
+        return dx * dx + dy * dy;
     }
 }
@@ -0,0 +1,139 @@
+import java.util.Arrays;
+
+/**
+ * Caches the bot to coin and coin to coin distances of one layout in flat arrays.
+ * Bot rows are only recomputed when the bot has moved or coins were added since the row was last
+ * read, and the coin to coin matrix is built the first time a solver asks for it. Layouts with too many
+ * coins for a full matrix get their coin to coin distances computed on every request instead.
+ * Distances are wall-aware, taken from the layout's {@link PathPlanner}. Bot rows of layouts too
+ * large for one array are computed on every request as well.
+ */
+public class DistanceMatrix {
+    // Coin count above which single coin to coin lookups do not build the full matrix
+    private static final int MATRIX_MAX_COINS = 1024;
+
+    // Largest array the JVM reliably allocates
+    private static final long MAX_ARRAY_LENGTH = Integer.MAX_VALUE - 8;
+
+    private final WorldState world;
+    private final int botCount;
+    private final PathPlanner planner;
+
+    // Coins the caches were sized for
+    private int coinCount;
+
+    // Bot to coin distances, row-major: botCoin[bot * coinCount + coin]
+    private double[] botCoin;
+
+    // Coin version every row of botCoin was computed for, -1 once the bot moved. Adding a coin
+    // bumps the version, so it costs nothing until rows are read
+    private final long[] botVersion;
+    private long coinVersion;
+
+    // Coin to coin distances, row-major: coinCoin[from * coinCount + to]
+    private double[] coinCoin;
+
+    public DistanceMatrix(WorldState world, PathPlanner planner) {
+        this.world = world;
+        this.botCount = world.botCount();
+        this.coinCount = world.coinCount();
+        this.planner = planner;
+        botVersion = new long[botCount];
+        Arrays.fill(botVersion, -1);
+    }
+
+    /**
+     * Marks the distances of a bot as out of date. Call this whenever the bot changes position.
+     */
+    public void botMoved(int botIndex) {
+        botVersion[botIndex] = -1;
+    }
+
+    /**
+     * Marks every distance as out of date, because a coin was added or put into the slot of
+     * another one.
+     */
+    public void coinsChanged() {
+        coinVersion++;
+        coinCoin = null;
+        if (world.coinCount() != coinCount) {
+            coinCount = world.coinCount();
+            botCoin = null;
+        }
+    }
+
+    /**
+     * Distance from a bot's current position to a coin.
+     */
+    public double botToCoin(int botIndex, int coinIndex) {
+        if (!cachesBotRows()) {
+            return planner.distance(world.botX[botIndex], world.botY[botIndex], coinIndex);
+        }
+        if (botVersion[botIndex] != coinVersion) {
+            refreshBot(botIndex);
+        }
+        return botCoin[botIndex * coinCount + coinIndex];
+    }
+
+    /**
+     * Copy of the distances from a bot's current position to every coin.
+     */
+    public double[] copyBotRow(int botIndex) {
+        if (!cachesBotRows()) {
+            double[] row = new double[coinCount];
+            for (int i = 0; i < coinCount; i++) {
+                row[i] = planner.distance(world.botX[botIndex], world.botY[botIndex], i);
+            }
+            return row;
+        }
+        if (botVersion[botIndex] != coinVersion) {
+            refreshBot(botIndex);
+        }
+        int offset = botIndex * coinCount;
+        return Arrays.copyOfRange(botCoin, offset, offset + coinCount);
+    }
+
+    public double coinToCoin(int from, int to) {
+        if (coinCoin == null && coinCount > MATRIX_MAX_COINS) {
+            return from == to ? 0 : planner.distance(world.coinX[from], world.coinY[from], to);
+        }
+        return coinMatrix()[from * coinCount + to];
+    }
+
+    /**
+     * Flat coin to coin distance matrix, row-major. The returned array must not be modified.
+     *
+     * @throws IllegalStateException if there are too many coins for the matrix to fit in one array.
+     */
+    public double[] coinMatrix() {
+        if (coinCoin == null) {
+            if ((long) coinCount * coinCount > MAX_ARRAY_LENGTH) {
+                throw new IllegalStateException("A coin to coin matrix of " + coinCount + " coins does not fit in one array");
+            }
+            double[] matrix = new double[coinCount * coinCount];
+            for (int i = 0; i < coinCount; i++) {
+                for (int j = 0; j < coinCount; j++) {
+                    matrix[i * coinCount + j] = i == j ? 0 : planner.distance(world.coinX[i], world.coinY[i], j);
+                }
+            }
+            coinCoin = matrix;
+        }
+        return coinCoin;
+    }
+
+    private boolean cachesBotRows() {
+        return (long) botCount * coinCount <= MAX_ARRAY_LENGTH;
+    }
+
+    private void refreshBot(int botIndex) {
+        if (botCoin == null) {
+            botCoin = new double[botCount * coinCount];
+        }
+        int x = world.botX[botIndex], y = world.botY[botIndex];
+        int offset = botIndex * coinCount;
+        for (int i = 0; i < coinCount; i++) {
+            botCoin[offset + i] = planner.distance(x, y, i);
+        }
+        botVersion[botIndex] = coinVersion;
+    }
+}
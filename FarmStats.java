@@ -0,0 +1,81 @@
+import java.util.Arrays;
+
+/**
+ * Collects the results of a simulation farm run and computes percentiles over them.
+ * Results may arrive from many threads at once.
+ */
+public class FarmStats {
+    private final long[] ticks;
+    private final long[] scores;
+    private final long[] solverNanos;
+    private final long[] wallNanos;
+    private int count;
+    private int incomplete;
+    private long elapsedNanos;
+
+    public FarmStats(int expectedGames) {
+        ticks = new long[expectedGames];
+        scores = new long[expectedGames];
+        solverNanos = new long[expectedGames];
+        wallNanos = new long[expectedGames];
+    }
+
+    public synchronized void accept(GameResult result) {
+        ticks[count] = result.ticks;
+        scores[count] = result.score;
+        solverNanos[count] = result.solverNanos;
+        wallNanos[count] = result.wallNanos;
+        count++;
+        if (!result.completed) {
+            incomplete++;
+        }
+    }
+
+    synchronized void finish(long elapsedNanos) {
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public synchronized int count() {
+        return count;
+    }
+
+    /**
+     * Value below which the given fraction of the games lie, e.g. 0.99 for the 99th percentile.
+     */
+    public synchronized long ticksPercentile(double fraction) {
+        return percentile(ticks, fraction);
+    }
+
+    public synchronized long solverNanosPercentile(double fraction) {
+        return percentile(solverNanos, fraction);
+    }
+
+    public synchronized long wallNanosPercentile(double fraction) {
+        return percentile(wallNanos, fraction);
+    }
+
+    public synchronized String summary() {
+        double seconds = elapsedNanos / 1e9;
+        return String.format("%d games (%d incomplete) in %.3fs, %.0f games/min%n", count, incomplete, seconds, count / seconds * 60)
+                + line("ticks", ticks, 1)
+                + line("score", scores, 1)
+                + line("solver ms", solverNanos, 1e6)
+                + line("game ms", wallNanos, 1e6);
+    }
+
+    private String line(String name, long[] values, double divisor) {
+        return String.format("%-10s p50=%.3f p90=%.3f p99=%.3f max=%.3f%n", name,
+                percentile(values, 0.5) / divisor, percentile(values, 0.9) / divisor,
+                percentile(values, 0.99) / divisor, percentile(values, 1.0) / divisor);
+    }
+
+    private long percentile(long[] values, double fraction) {
+        if (count == 0) {
+            return 0;
+        }
+        long[] sorted = Arrays.copyOf(values, count);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(fraction * count) - 1;
+        return sorted[Math.max(0, Math.min(count - 1, index))];
+    }
+}
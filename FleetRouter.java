@@ -0,0 +1,549 @@
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+
+/**
+ * Splits the uncollected coins among the bots and orders every bot's share, so that the last coin
+ * is collected as early as possible (vehicle routing with open routes that start at the bots,
+ * minimizing the longest route).
+ *
+ * A parallel nearest neighbour construction lets the bot with the shortest route so far take the
+ * coin nearest to the end of its route. Local search then improves the plan until no move helps
+ * or the time budget is used up: 2-opt inside a route, or-opt moves of up to three coins within
+ * and between routes, and cross-exchange of segments between two routes. Moves are only tried
+ * between a coin and its nearest neighbours, and each one is evaluated from the few edges it
+ * changes, so layouts with a hundred bots and thousands of coins stay tractable.
+ * A move between two routes is taken when it shortens the longer of the two, or keeps it and
+ * shortens their sum; the longest route of the plan therefore never grows.
+ *
+ * The search is anytime: it stops when its {@link SearchControl} says so and publishes every plan
+ * with a shorter longest route to an {@link IncumbentListener}, starting with the constructed one.
+ */
+public class FleetRouter {
+    // Nearest coins every coin tries moves with
+    private static final int NEIGHBORS = 8;
+
+    // Longest segment moved by or-opt and cross-exchange
+    private static final int MAX_SEGMENT = 3;
+
+    // Candidates compared by real distance when a route is extended during construction
+    private static final int CONSTRUCTION_CANDIDATES = 4;
+
+    // Smallest improvement a move must bring, so rounding noise cannot make the search cycle
+    private static final double EPSILON = 1e-7;
+
+    // Stands for the end of a route, which costs nothing to reach
+    private static final int END = -1;
+
+    private final WorldState world;
+    private final int botCount, coinCount;
+    private final DistanceMatrix distances;
+    private final int width, height;
+
+    // Nearest coins of every coin, NEIGHBORS per coin, -1 where there are fewer
+    private final int[] neighbors;
+
+    // Coins of every route in visiting order, only the first routeSize[route] entries are live
+    private final int[][] routes;
+    private final int[] routeSize;
+    private final double[] routeLength;
+
+    // Route and position of every coin, -1 for coins that are not part of the plan
+    private final int[] coinRoute, coinPosition;
+
+    // Distance from the previous coin, or the bot for the first coin, to every planned coin
+    private final double[] edgeIn;
+
+    // Direct-mapped cache of coin to coin distances, keyed by from * coinCount + to (-1 when empty).
+    // Moves keep evaluating the same few pairs around each coin, which is much cheaper than asking
+    // the distance matrix, whose large layouts compute every distance on request
+    private final long[] cacheKeys;
+    private final double[] cacheDistances;
+    private final int cacheMask;
+
+    // Coin excluded from the neighbour query that is running
+    private int excludedCoin;
+    private final IntPredicate notExcluded = coinIndex -> coinIndex != excludedCoin;
+
+    // Number of improving moves applied by the last solve, and number of moves evaluated
+    private long moves, evaluations;
+
+    // Statistics of the last solve
+    private SolverStats stats;
+
+    /**
+     * Creates a router for the current positions of the bots and the coins not collected yet.
+     *
+     * @param width  width of the area the coins lie in.
+     * @param height height of the area the coins lie in.
+     */
+    public FleetRouter(WorldState world, DistanceMatrix distances, int width, int height) {
+        this.world = world;
+        this.botCount = world.botCount();
+        this.coinCount = world.coinCount();
+        this.distances = distances;
+        this.width = width;
+        this.height = height;
+        neighbors = new int[coinCount * NEIGHBORS];
+        routes = new int[botCount][];
+        routeSize = new int[botCount];
+        routeLength = new double[botCount];
+        coinRoute = new int[coinCount];
+        coinPosition = new int[coinCount];
+        edgeIn = new double[coinCount];
+        int cacheSize = Integer.highestOneBit(Math.max(1024, Math.min(1 << 20, coinCount * NEIGHBORS * 4)));
+        cacheKeys = new long[cacheSize];
+        cacheDistances = new double[cacheSize];
+        cacheMask = cacheSize - 1;
+        Arrays.fill(cacheKeys, -1);
+    }
+
+    /**
+     * Builds a plan and improves it for at most the given time.
+     *
+     * @param budgetNanos time the local search may take after the construction.
+     * @return coin indices of every bot in visiting order.
+     */
+    public int[][] solve(long budgetNanos) {
+        return solve(SearchControl.withTimeLimit(budgetNanos), (plan, makespan) -> { });
+    }
+
+    /**
+     * Builds a plan and improves it until no move helps or the control stops the search. The
+     * node limit of the control counts evaluated moves.
+     *
+     * @param control  limits and cancellation of the local search; the construction always runs.
+     * @param listener receives a copy of the constructed plan and of every plan with a shorter
+     *                 longest route, together with that length.
+     * @return coin indices of every bot in visiting order.
+     */
+    public int[][] solve(SearchControl control, IncumbentListener<int[][]> listener) {
+        long start = System.nanoTime();
+        construct();
+        moves = 0;
+        evaluations = 0;
+        listener.improved(getPlan(), makespan());
+        boolean completed = localSearch(control, listener);
+        stats = new SolverStats(evaluations, evaluations - moves, System.nanoTime() - start,
+                makespan(), lowerBound(), completed);
+        return getPlan();
+    }
+
+    /**
+     * Length of the longest route of the current plan.
+     */
+    public double makespan() {
+        double longest = 0;
+        for (double length : routeLength) {
+            longest = Math.max(longest, length);
+        }
+        return longest;
+    }
+
+    /**
+     * Sum of all route lengths of the current plan.
+     */
+    public double totalLength() {
+        double total = 0;
+        for (double length : routeLength) {
+            total += length;
+        }
+        return total;
+    }
+
+    public long getMoves() {
+        return moves;
+    }
+
+    /**
+     * Statistics of the last solve: evaluated moves as nodes, rejected moves as prunes, and the
+     * gap between the longest route and {@link #lowerBound()}. A completed local search is only a
+     * local optimum, so its gap is the one to the bound, not zero.
+     */
+    public SolverStats getStats() {
+        return stats;
+    }
+
+    /**
+     * Lower bound on the longest route of any plan: every coin has to be reached by some bot,
+     * which takes at least the distance from the nearest bot.
+     */
+    public double lowerBound() {
+        double bound = 0;
+        for (int coinIndex = 0; coinIndex < coinCount; coinIndex++) {
+            if (coinRoute[coinIndex] == -1) {
+                continue;
+            }
+            double nearest = Double.MAX_VALUE;
+            for (int botIndex = 0; botIndex < botCount; botIndex++) {
+                nearest = Math.min(nearest, distances.botToCoin(botIndex, coinIndex));
+            }
+            bound = Math.max(bound, nearest);
+        }
+        return bound;
+    }
+
+    /**
+     * Copy of the current plan: coin indices of every bot in visiting order.
+     */
+    public int[][] getPlan() {
+        int[][] plan = new int[routes.length][];
+        for (int route = 0; route < routes.length; route++) {
+            plan[route] = Arrays.copyOf(routes[route], routeSize[route]);
+        }
+        return plan;
+    }
+
+    /**
+     * Parallel nearest neighbour: the bot whose route is shortest so far appends the closest
+     * remaining coin to its route, until every coin is planned.
+     */
+    private void construct() {
+        Arrays.fill(coinRoute, -1);
+        CoinGrid grid = new CoinGrid(world, width, height);
+        int[] candidates = new int[NEIGHBORS + 1];
+        int remaining = 0;
+        for (int coinIndex = 0; coinIndex < coinCount; coinIndex++) {
+            if (world.isCollected(coinIndex)) {
+                continue;
+            }
+            remaining++;
+            excludedCoin = coinIndex;
+            int found = grid.nearest(world.coinX[coinIndex], world.coinY[coinIndex], NEIGHBORS, candidates, notExcluded);
+            for (int k = 0; k < NEIGHBORS; k++) {
+                neighbors[coinIndex * NEIGHBORS + k] = k < found ? candidates[k] : -1;
+            }
+        }
+
+        int expected = Math.max(4, remaining / Math.max(1, botCount) + 1);
+        for (int route = 0; route < routes.length; route++) {
+            routes[route] = new int[expected];
+            routeSize[route] = 0;
+            routeLength[route] = 0;
+        }
+        if (botCount == 0) {
+            return;
+        }
+
+        for (; remaining > 0; remaining--) {
+            int route = 0;
+            for (int r = 1; r < routes.length; r++) {
+                if (routeLength[r] < routeLength[route]) {
+                    route = r;
+                }
+            }
+            int last = routeSize[route] == 0 ? END : routes[route][routeSize[route] - 1];
+            int x = last == END ? world.botX[route] : world.coinX[last];
+            int y = last == END ? world.botY[route] : world.coinY[last];
+
+            // The straight-line nearest coins are the candidates, the real distance decides
+            int found = grid.nearest(x, y, CONSTRUCTION_CANDIDATES, candidates, coinIndex -> true);
+            int next = candidates[0];
+            double nextDistance = distance(route, last, next);
+            for (int k = 1; k < found; k++) {
+                double d = distance(route, last, candidates[k]);
+                if (d < nextDistance) {
+                    nextDistance = d;
+                    next = candidates[k];
+                }
+            }
+            grid.remove(next);
+            append(route, next);
+            edgeIn[next] = nextDistance;
+            routeLength[route] += nextDistance;
+        }
+    }
+
+    private void append(int route, int coinIndex) {
+        if (routeSize[route] == routes[route].length) {
+            routes[route] = Arrays.copyOf(routes[route], routes[route].length * 2);
+        }
+        coinRoute[coinIndex] = route;
+        coinPosition[coinIndex] = routeSize[route];
+        routes[route][routeSize[route]++] = coinIndex;
+    }
+
+    /**
+     * First-improvement local search over every coin and its neighbours, repeated until a whole
+     * pass finds nothing or the control stops it. The plan is published after every pass that
+     * shortened the longest route.
+     *
+     * @return true if the search ran until no move helped.
+     */
+    private boolean localSearch(SearchControl control, IncumbentListener<int[][]> listener) {
+        double published = makespan();
+        long reported = 0;
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            for (int coinIndex = 0; coinIndex < coinCount; coinIndex++) {
+                if ((coinIndex & 63) == 0) {
+                    boolean stop = control.report(evaluations - reported);
+                    reported = evaluations;
+                    if (stop) {
+                        return false;
+                    }
+                }
+                if (coinRoute[coinIndex] == -1) {
+                    continue;
+                }
+                while (!control.isStopped() && improveCoin(coinIndex)) {
+                    moves++;
+                    improved = true;
+                }
+            }
+            double makespan = makespan();
+            if (makespan < published) {
+                published = makespan;
+                listener.improved(getPlan(), makespan);
+            }
+        }
+        control.report(evaluations - reported);
+        return true;
+    }
+
+    /**
+     * Tries every move that puts the coin next to one of its neighbours and applies the first
+     * one that improves the plan.
+     */
+    private boolean improveCoin(int coinIndex) {
+        for (int k = 0; k < NEIGHBORS; k++) {
+            int neighbor = neighbors[coinIndex * NEIGHBORS + k];
+            if (neighbor == -1) {
+                break;
+            }
+            int route = coinRoute[coinIndex], otherRoute = coinRoute[neighbor];
+            if (route == otherRoute) {
+                int low = Math.min(coinPosition[coinIndex], coinPosition[neighbor]);
+                int high = Math.max(coinPosition[coinIndex], coinPosition[neighbor]);
+                if (twoOpt(route, low, high) || twoOpt(route, low - 1, high - 1)) {
+                    return true;
+                }
+            }
+            for (int length = 1; length <= MAX_SEGMENT; length++) {
+                if (orOpt(coinIndex, length, neighbor, true) || orOpt(coinIndex, length, neighbor, false)) {
+                    return true;
+                }
+            }
+            if (route != otherRoute) {
+                for (int length = 1; length <= MAX_SEGMENT; length++) {
+                    for (int otherLength = 1; otherLength <= MAX_SEGMENT; otherLength++) {
+                        if (crossExchange(coinIndex, length, neighbor, otherLength)) {
+                            return true;
+                        }
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Reverses the coins at positions from + 1 to to, replacing the edges after position from and
+     * after position to. Position -1 stands for the bot. The delta treats the reversed segment as
+     * equally long both ways, which holds up to the staircase detours around walls.
+     */
+    private boolean twoOpt(int route, int from, int to) {
+        if (from < -1 || to - from < 2) {
+            return false;
+        }
+        evaluations++;
+        int a = coinAt(route, from), b = coinAt(route, from + 1);
+        int c = coinAt(route, to), d = coinAt(route, to + 1);
+        double delta = distance(route, a, c) + distance(route, b, d) - edgeIn[b] - edgeInOf(d);
+        if (delta > -EPSILON) {
+            return false;
+        }
+        int[] coinsOfRoute = routes[route];
+        for (int i = from + 1, j = to; i < j; i++, j--) {
+            int swap = coinsOfRoute[i];
+            coinsOfRoute[i] = coinsOfRoute[j];
+            coinsOfRoute[j] = swap;
+        }
+        recompute(route, from + 1);
+        return true;
+    }
+
+    /**
+     * Moves the segment of the given length starting at a coin next to a neighbour, right after
+     * it or right before it, in the same or another route.
+     */
+    private boolean orOpt(int coinIndex, int length, int neighbor, boolean after) {
+        int route = coinRoute[coinIndex], start = coinPosition[coinIndex];
+        if (start + length > routeSize[route]) {
+            return false;
+        }
+        int otherRoute = coinRoute[neighbor], neighborPosition = coinPosition[neighbor];
+        // Insertion point: the new segment goes between positions insertAt - 1 and insertAt
+        int insertAt = after ? neighborPosition + 1 : neighborPosition;
+        if (route == otherRoute && insertAt >= start && insertAt <= start + length) {
+            return false; // Inside the segment or right next to it, nothing would change
+        }
+        evaluations++;
+
+        int first = coinAt(route, start), last = coinAt(route, start + length - 1);
+        int before = coinAt(route, start - 1), behind = coinAt(route, start + length);
+        double removeGain = edgeIn[first] + edgeInOf(behind) - distance(route, before, behind);
+
+        int insertBefore = coinAt(otherRoute, insertAt - 1), insertBehind = coinAt(otherRoute, insertAt);
+        double insertCost = distance(otherRoute, insertBefore, first) + distance(otherRoute, last, insertBehind)
+                - edgeInOf(insertBehind);
+
+        if (route == otherRoute) {
+            if (insertCost - removeGain > -EPSILON) {
+                return false;
+            }
+        } else {
+            // The segment's own edges move to the other route as well
+            double inner = innerLength(route, start, length);
+            if (!betterPair(route, routeLength[route] - removeGain - inner,
+                    otherRoute, routeLength[otherRoute] + insertCost + inner)) {
+                return false;
+            }
+        }
+
+        int[] segment = new int[length];
+        System.arraycopy(routes[route], start, segment, 0, length);
+        removeRange(route, start, length);
+        if (route == otherRoute && insertAt > start) {
+            insertAt -= length;
+        }
+        insertRange(otherRoute, insertAt, segment);
+        if (otherRoute == route) {
+            recompute(route, Math.min(start, insertAt));
+        } else {
+            recompute(route, start);
+            recompute(otherRoute, insertAt);
+        }
+        return true;
+    }
+
+    /**
+     * Swaps the segment starting at a coin with the segment right behind a neighbour in another
+     * route, so that the neighbour is followed by the coin afterwards.
+     */
+    private boolean crossExchange(int coinIndex, int length, int neighbor, int otherLength) {
+        int route = coinRoute[coinIndex], start = coinPosition[coinIndex];
+        int otherRoute = coinRoute[neighbor], otherStart = coinPosition[neighbor] + 1;
+        if (start + length > routeSize[route] || otherStart + otherLength > routeSize[otherRoute]) {
+            return false;
+        }
+        evaluations++;
+        int first = coinAt(route, start), last = coinAt(route, start + length - 1);
+        int before = coinAt(route, start - 1), behind = coinAt(route, start + length);
+        int otherFirst = coinAt(otherRoute, otherStart), otherLast = coinAt(otherRoute, otherStart + otherLength - 1);
+        int otherBehind = coinAt(otherRoute, otherStart + otherLength);
+
+        double inner = innerLength(route, start, length);
+        double otherInner = innerLength(otherRoute, otherStart, otherLength);
+        double newLength = routeLength[route] - edgeIn[first] - edgeInOf(behind) - inner + otherInner
+                + distance(route, before, otherFirst) + distance(route, otherLast, behind);
+        double newOtherLength = routeLength[otherRoute] - edgeIn[otherFirst] - edgeInOf(otherBehind) - otherInner + inner
+                + distance(otherRoute, neighbor, first) + distance(otherRoute, last, otherBehind);
+        if (!betterPair(route, newLength, otherRoute, newOtherLength)) {
+            return false;
+        }
+
+        int[] segment = Arrays.copyOfRange(routes[route], start, start + length);
+        int[] otherSegment = Arrays.copyOfRange(routes[otherRoute], otherStart, otherStart + otherLength);
+        removeRange(route, start, length);
+        insertRange(route, start, otherSegment);
+        removeRange(otherRoute, otherStart, otherLength);
+        insertRange(otherRoute, otherStart, segment);
+        recompute(route, start);
+        recompute(otherRoute, otherStart);
+        return true;
+    }
+
+    /**
+     * Whether new lengths for two routes improve the plan: the longer of the two gets shorter,
+     * or stays and their sum gets shorter.
+     */
+    private boolean betterPair(int route, double newLength, int otherRoute, double newOtherLength) {
+        double oldMax = Math.max(routeLength[route], routeLength[otherRoute]);
+        double newMax = Math.max(newLength, newOtherLength);
+        if (newMax < oldMax - EPSILON) {
+            return true;
+        }
+        return newMax <= oldMax
+                && newLength + newOtherLength < routeLength[route] + routeLength[otherRoute] - EPSILON;
+    }
+
+    /**
+     * Length of the edges inside a segment, from its first coin to its last.
+     */
+    private double innerLength(int route, int start, int length) {
+        double inner = 0;
+        for (int i = start + 1; i < start + length; i++) {
+            inner += edgeIn[routes[route][i]];
+        }
+        return inner;
+    }
+
+    private void removeRange(int route, int start, int length) {
+        int[] coinsOfRoute = routes[route];
+        System.arraycopy(coinsOfRoute, start + length, coinsOfRoute, start, routeSize[route] - start - length);
+        routeSize[route] -= length;
+    }
+
+    private void insertRange(int route, int at, int[] segment) {
+        if (routeSize[route] + segment.length > routes[route].length) {
+            routes[route] = Arrays.copyOf(routes[route], Math.max(routes[route].length * 2, routeSize[route] + segment.length));
+        }
+        int[] coinsOfRoute = routes[route];
+        System.arraycopy(coinsOfRoute, at, coinsOfRoute, at + segment.length, routeSize[route] - at);
+        System.arraycopy(segment, 0, coinsOfRoute, at, segment.length);
+        routeSize[route] += segment.length;
+    }
+
+    /**
+     * Recomputes positions, incoming edges and the length of a route after a move changed it
+     * from the given position on.
+     */
+    private void recompute(int route, int fromPosition) {
+        double length = 0;
+        for (int i = 0; i < fromPosition; i++) {
+            length += edgeIn[routes[route][i]];
+        }
+        int previous = coinAt(route, fromPosition - 1);
+        for (int i = fromPosition; i < routeSize[route]; i++) {
+            int coinIndex = routes[route][i];
+            coinRoute[coinIndex] = route;
+            coinPosition[coinIndex] = i;
+            edgeIn[coinIndex] = distance(route, previous, coinIndex);
+            length += edgeIn[coinIndex];
+            previous = coinIndex;
+        }
+        routeLength[route] = length;
+    }
+
+    /**
+     * Coin at a position of a route; positions before the start and past the end give END.
+     */
+    private int coinAt(int route, int position) {
+        return position < 0 || position >= routeSize[route] ? END : routes[route][position];
+    }
+
+    private double edgeInOf(int coinIndex) {
+        return coinIndex == END ? 0 : edgeIn[coinIndex];
+    }
+
+    /**
+     * Distance between two stops of a route, where END before a coin stands for the route's bot
+     * and END after a coin for the end of the route.
+     */
+    private double distance(int route, int from, int to) {
+        if (to == END) {
+            return 0;
+        }
+        if (from == END) {
+            return distances.botToCoin(route, to);
+        }
+        long key = (long) from * coinCount + to;
+        int slot = (int) (key ^ (key >>> 17)) * 0x9E3779B1 >>> 1 & cacheMask;
+        if (cacheKeys[slot] != key) {
+            cacheKeys[slot] = key;
+            cacheDistances[slot] = distances.coinToCoin(from, to);
+        }
+        return cacheDistances[slot];
+    }
+}
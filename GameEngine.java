@@ -1,44 +1,165 @@
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.IntPredicate;
 
 /**
  * Manages the game logic for bots collecting coins in an optimized manner.
  */
 public class GameEngine {
-    // Array of bot entities in the game
-    Bot[] bots;
+    // Positions of the bots and coins and which coins are collected
+    final WorldState world;
 
-    // Array of coin entities in the game
-    Coin[] coins;
+    // Number of bots in the game; the coins are counted by the world, since coins can be added
+    private final int botCount;
 
-    // Used for generating random positions
-    Random random = new Random();
+    // Coin each bot is walking to, -1 for none
+    private int[] bestAssignment;
 
-    // Tracks the minimum distance found for the optimal coin collection path
-    private double minDistance = Double.MAX_VALUE;
+    // Hungarian solver reused for every assignment optimization, with one column per coin
+    private HungarianAssignment assignmentSolver;
 
-    // Stores the best coin assignment to bots based on the optimization process
-    private int[] bestAssignment;
+    // Per-bot coin result of the last assignment optimization
+    private int[] assignmentColumns;
+
+    // Whether the optimal assignment is repaired every tick instead of greedily reassigning bots
+    private boolean continuousReoptimization;
+
+    // Bots that moved since their cost row in the assignment solver was last refreshed
+    private boolean[] botCostStale;
+
+    // Position of every bot when its whole cost row was last computed
+    private int[] costRowX, costRowY;
+
+    // Distance a bot may walk before its whole cost row is computed again; until then only the
+    // cost of its own coin is. A step changes the distance to any coin by about its length, so
+    // the other costs are off by at most about this much
+    private static final int COST_ROW_REFRESH = 16;
 
-    // Flags to keep track of which coins have been considered in the current assignment calculation
-    private boolean[] taken;
+    // Relative gap to the optimum above which the repaired assignment is solved again from scratch
+    private static final double REOPTIMIZE_GAP = 0.01;
+
+    // Coins of every bot in collection order while the bots follow a fleet plan, null otherwise.
+    // A gone coin is cleared to -1, so its slot can be reused for a new coin outside the plan
+    private int[][] fleetRoutes;
+
+    // Position in its fleet route of the coin each bot is collecting
+    private int[] fleetProgress;
+
+    // Bot whose fleet route holds each coin and where, bot -1 if the coin is not in the plan,
+    // and how many coins in play are not in it
+    private int[] fleetBot, fleetPosition;
+    private int unplannedCoins;
 
     // Dimensions of the game panel
     private int panelWidth, panelHeight;
 
-    // Margins to ensure bots and coins don't spawn too close to the edge
-    private int botx=20, boty=20;
-    private int coinx=20, coiny=20;
-
     // Tracks the current score of the game
     private int score = 0;
 
-    // Lists storing the optimal path of coin indices for each bot
-    private List<List<Integer>> optimalPaths;
+    // Best path of coin indices found so far for each bot, optimal once routesFuture completed
+    private final AtomicReferenceArray<int[]> optimalPaths;
+
+    // Statistics of every bot's route search, set when the search ends
+    private final SolverStats[] routeStats;
+
+    // Completes when every bot's optimal path has been computed
+    private CompletableFuture<Void> routesFuture;
+
+    // Walls of the layout. The list is never changed: a wall change replaces it, so snapshots can keep it
+    List<Wall> walls;
+
+    // Proximity at which a bot collects its target coin
+    private static final int COLLECT_DISTANCE = 5;
+
+    // Ticks simulated so far
+    private long tick;
+
+    // Predicted arrival events of the bots, and the tick of each bot's current event (-1 for none)
+    private final ArrivalQueue arrivals = new ArrivalQueue();
+    private long[] botEventTick;
+
+    // Whether each bot's current leg can be walked without touching a wall
+    private boolean[] botLegClear;
+
+    // Set when a coin was released or the game started, so bots without a target look again
+    private boolean idleBotsNeedRetry = true;
+
+    // Points for every collected coin
+    static final int COIN_SCORE = 10;
+
+    // Bots and coins printed by printLayout before it only prints how many are left
+    private static final int PRINT_LAYOUT_LIMIT = 20;
+
+    // Number of nearest coins compared by wall-aware distance when reassigning a bot
+    private static final int REASSIGN_CANDIDATES = 8;
+
+    // Wall-aware distances and waypoints over the layout's visibility graph
+    private PathPlanner planner;
+
+    // Visibility graph node each bot is walking to (-1 for straight to the coin), and the coin it was picked for
+    private int[] botWaypoint;
+    private int[] botWaypointCoin;
 
-    List<Wall> walls = new ArrayList<>();
+    // Scratch buffer for nearest-coin candidates
+    private final int[] reassignCandidates = new int[REASSIGN_CANDIDATES];
+
+    // Cached wall-aware bot to coin and coin to coin distances, shared by all solvers
+    private DistanceMatrix distances;
+
+    // Spatial index over the uncollected coins for nearest-coin lookups
+    private CoinGrid coinGrid;
+
+    // Index of the bot targeting each coin, -1 if no bot targets it
+    private int[] coinTargetedBy;
+
+    // Coin filter for nearest-coin lookups
+    private final IntPredicate untargetedCoin = coinIndex -> coinTargetedBy[coinIndex] == -1;
+    private final IntPredicate unplannedCoin = coinIndex -> coinTargetedBy[coinIndex] == -1 && !fleetPlanned(coinIndex);
+
+    // Where the counters and timings go; only measured while metricsEnabled is set
+    private MetricsRegistry metrics = MetricsRegistry.DISABLED;
+    private boolean metricsEnabled;
+
+    // When the current tick or event jump started
+    private long stepStartNanos;
+
+    // Times a bot got a new target coin, and the counts already handed to the registry
+    private long reassignments;
+    private long reportedReassignments, reportedWallChecks;
+    private int reportedScore;
+
+    // Seed the layout was drawn from, to play the same game again
+    private final long seed;
+
+    // Event log of the game, null while nothing is recorded
+    private GameRecorder recorder;
+
+    // Point each bot walks to this tick, its waypoint or its target coin
+    private final int[] botLegX, botLegY;
+
+    // Whether bots keep apart, and the mover doing it, kept once created for its wall check count
+    private boolean crowdAvoidance;
+    private CrowdMover crowd;
+
+    // Wall checks of the planners replaced by wall changes, so the count keeps going up
+    private long retiredWallChecks;
+
+    // Slots of gone coins that no bot refers to anymore, taken by coins added later
+    private int[] freeCoins = new int[16];
+    private int freeCoinCount;
+
+    // Bot positions hashed for finding the bots around an added coin, and the tick they were hashed at
+    private BotGrid botGrid;
+    private long botGridTick = -1;
+
+    // Bots around an added coin that are offered to switch to it
+    private static final int SPAWN_NEIGHBOURS = 32;
 
 
     /**
@@ -46,190 +167,922 @@ public class GameEngine {
      * and sets the dimensions for the game panel.
      */
     public GameEngine(int numberOfBots, int numberOfcoins, int panelWidth, int panelHeight) {
-        this.panelWidth = panelWidth;
-        this.panelHeight = panelHeight;
-        bots = new Bot[numberOfBots];
-        coins = new Coin[numberOfcoins];
+        this(numberOfBots, numberOfcoins, panelWidth, panelHeight, new Random().nextLong(), defaultWalls());
+    }
+
+    /**
+     * Initializes the game engine with a reproducible layout: the same seed, sizes and walls always
+     * place the bots and coins at the same positions.
+     */
+    public GameEngine(int numberOfBots, int numberOfcoins, int panelWidth, int panelHeight, long seed, List<Wall> walls) {
+        this(Scenario.generate(numberOfBots, numberOfcoins, panelWidth, panelHeight, seed, walls));
+    }
+
+    /**
+     * Initializes the game engine with a given layout, e.g. one loaded with {@link ScenarioFile}.
+     * The bot positions are copied, the coin positions are shared with the scenario until a coin is added.
+     */
+    public GameEngine(Scenario scenario) {
+        this.panelWidth = scenario.width;
+        this.panelHeight = scenario.height;
+        this.seed = scenario.seed;
+        int numberOfBots = scenario.botCount(), numberOfcoins = scenario.coinCount();
+        botCount = numberOfBots;
+        world = new WorldState(scenario.botX.clone(), scenario.botY.clone(), scenario.coinX, scenario.coinY);
+        this.walls = Collections.unmodifiableList(new ArrayList<>(scenario.walls));
+        WallIndex wallIndex = new WallIndex(this.walls);
+
+        planner = new PathPlanner(wallIndex, this.walls, world);
+        botWaypoint = new int[numberOfBots];
+        botWaypointCoin = new int[numberOfBots];
+        Arrays.fill(botWaypoint, -1);
+        Arrays.fill(botWaypointCoin, -1);
+        botEventTick = new long[numberOfBots];
+        Arrays.fill(botEventTick, -1);
+        botLegClear = new boolean[numberOfBots];
+        botLegX = new int[numberOfBots];
+        botLegY = new int[numberOfBots];
+        distances = new DistanceMatrix(world, planner);
+        coinGrid = new CoinGrid(world, panelWidth, panelHeight);
+        coinTargetedBy = new int[numberOfcoins];
+        Arrays.fill(coinTargetedBy, -1);
+        bestAssignment = new int[numberOfBots];
+        Arrays.fill(bestAssignment, -1);
+        assignmentColumns = new int[numberOfBots];
+        botCostStale = new boolean[numberOfBots];
+        costRowX = new int[numberOfBots];
+        costRowY = new int[numberOfBots];
+
+        optimalPaths = new AtomicReferenceArray<>(numberOfBots);
+        routeStats = new SolverStats[numberOfBots];
+    }
+
+    /**
+     * The two walls every interactive game starts with.
+     */
+    static List<Wall> defaultWalls() {
+        List<Wall> walls = new ArrayList<>();
         walls.add(new Wall(100, 100, 200, 100));
         walls.add(new Wall(200, 100, 200, 200));
+        return walls;
+    }
 
-        // Initialize bots and coins with random positions within the game panel
-        for (int i = 0; i < numberOfBots; i++) {
-            bots[i] = new Bot(random.nextInt(panelWidth - 3 * botx) + botx, random.nextInt(panelHeight - 3 * boty) + boty);
-            System.out.println("Bot position - x: " + bots[i].x + ", y: " + bots[i].y);
+    /**
+     * Prints the start position of the first bots and coins. Large worlds only get a count of the
+     * rest, printing them all would take longer than setting them up.
+     */
+    public void printLayout() {
+        StringBuilder layout = new StringBuilder();
+        for (int i = 0; i < Math.min(botCount, PRINT_LAYOUT_LIMIT); i++) {
+            layout.append("Bot position - x: ").append(world.botX[i]).append(", y: ").append(world.botY[i]).append('\n');
+        }
+        if (botCount > PRINT_LAYOUT_LIMIT) {
+            layout.append("... and ").append(botCount - PRINT_LAYOUT_LIMIT).append(" more bots\n");
         }
-        for (int i = 0; i < numberOfcoins; i++) {
-            coins[i] = new Coin(random.nextInt(panelWidth - 3 * coinx) + coinx, random.nextInt(panelHeight - 3 * coiny) + coiny);
-            System.out.println("Coin position - x: " + coins[i].x + ", y: " + coins[i].y);
+        int coinCount = world.coinCount();
+        for (int i = 0; i < Math.min(coinCount, PRINT_LAYOUT_LIMIT); i++) {
+            layout.append("Coin position - x: ").append(world.coinX[i]).append(", y: ").append(world.coinY[i]).append('\n');
         }
+        if (coinCount > PRINT_LAYOUT_LIMIT) {
+            layout.append("... and ").append(coinCount - PRINT_LAYOUT_LIMIT).append(" more coins\n");
+        }
+        System.out.print(layout);
+    }
 
-        bestAssignment = new int[numberOfBots];
-        Arrays.fill(bestAssignment, -1);
-        taken = new boolean[numberOfcoins];
+    /**
+     * Sends the engine's counters and timings to a registry, see {@link Metric}. Searches that are
+     * already running keep the registry they started with.
+     */
+    public void setMetrics(MetricsRegistry metrics) {
+        this.metrics = metrics;
+        metricsEnabled = metrics.isEnabled();
+        stepStartNanos = System.nanoTime();
+        reportedReassignments = reassignments;
+        reportedWallChecks = wallChecks();
+        reportedScore = score;
+    }
 
-        optimalPaths = new ArrayList<>(bots.length);
-        for (int i = 0; i < bots.length; i++) {
-            optimalPaths.add(new ArrayList<>());
-        }
-        preComputeRoutesForAllBots();
+    /**
+     * Hands the counts gathered since the last flush to the registry. Plain fields are bumped on
+     * the hot paths and only the differences are reported once per step.
+     */
+    private void flushMetrics() {
+        long wallChecks = wallChecks();
+        metrics.count(Metric.REASSIGNMENTS, reassignments - reportedReassignments);
+        metrics.count(Metric.WALL_CHECKS, wallChecks - reportedWallChecks);
+        metrics.count(Metric.COINS_COLLECTED, (score - reportedScore) / COIN_SCORE);
+        metrics.count(Metric.SCORE, score - reportedScore);
+        reportedReassignments = reassignments;
+        reportedWallChecks = wallChecks;
+        reportedScore = score;
     }
 
-    private void preComputeRoutesForAllBots() {
-        for (int i = 0; i < bots.length; i++) {
-            boolean[] visited = new boolean[coins.length];
-            List<Integer> currentPath = new ArrayList<>();
-            double[] minDistanceWrapper = new double[]{Double.MAX_VALUE};
-            List<Integer> optimalPath = new ArrayList<>();
-            preComputeRouteForBot(i, visited, currentPath, 0, minDistanceWrapper, optimalPath);
-            optimalPaths.set(i, optimalPath); // Assign the computed path to the bot
-        }
+    private long wallChecks() {
+        return retiredWallChecks + planner.wallChecks() + (crowd != null ? crowd.wallChecks() : 0);
     }
 
+    private void finishStep(long ticks) {
+        metrics.count(Metric.TICKS, ticks);
+        metrics.record(Metric.TICK_NANOS, System.nanoTime() - stepStartNanos);
+        flushMetrics();
+    }
 
-    private void preComputeRouteForBot(int botIndex, boolean[] visited, List<Integer> currentPath, double currentDistance, double[] minDistanceWrapper, List<Integer> optimalPath) {
-        if (currentPath.size() == coins.length) {
-            if (currentDistance < minDistanceWrapper[0]) {
-                minDistanceWrapper[0] = currentDistance;
-                optimalPath.clear();
-                optimalPath.addAll(currentPath);
-            }
-            return;
-        }
+    public int getScore() {
+        return score;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * The current layout: bot positions, coin positions and walls, all copied. The coins include
+     * the slots of collected and removed coins, so coin indices stay the same.
+     */
+    public Scenario toScenario() {
+        return new Scenario(panelWidth, panelHeight, seed, world.botX.clone(), world.botY.clone(),
+                Arrays.copyOf(world.coinX, world.coinCount()), Arrays.copyOf(world.coinY, world.coinCount()), new ArrayList<>(walls));
+    }
 
-        for (int i = 0; i < coins.length; i++) {
-            if (!visited[i]) {
-                visited[i] = true;
-                currentPath.add(i);
-                double nextDistance = currentDistance;
-                if (!currentPath.isEmpty()) {
-                    Coin lastCoin = coins[currentPath.get(currentPath.size() - 1)];
-                    Coin nextCoin = coins[i];
-                    nextDistance += calculateDistance(bots[botIndex].x, bots[botIndex].y, nextCoin.x, nextCoin.y);
+    /**
+     * Starts recording the game from here on, or stops with null. The recorder should be created
+     * from {@link #toScenario()}; it gets a keyframe of the current state right away. Closing the
+     * recorder is up to the caller, after it was replaced.
+     */
+    public void setRecorder(GameRecorder recorder) {
+        this.recorder = recorder;
+        if (recorder != null) {
+            for (int i = 0; i < botCount; i++) {
+                int coinIndex = bestAssignment[i];
+                if (coinIndex != -1) {
+                    int waypoint = planner.hasWalls() ? botWaypoint[i] : -1;
+                    recorder.leg(tick, i, waypoint == -1 ? world.coinX[coinIndex] : planner.nodeX(waypoint),
+                            waypoint == -1 ? world.coinY[coinIndex] : planner.nodeY(waypoint));
                 }
-                preComputeRouteForBot(botIndex, visited, currentPath, nextDistance, minDistanceWrapper, optimalPath);
-                visited[i] = false;
-                currentPath.remove(currentPath.size() - 1);
             }
+            recorder.keyframe(tick, score, world, bestAssignment);
+        }
+    }
+
+    /**
+     * Starts computing the shortest route through all coins for every bot and returns right away.
+     * Bots are solved in parallel on the common fork-join pool, and each bot's branch and bound
+     * search is split further into subtree tasks. The solver picks Held-Karp or branch and bound
+     * depending on the coin count and the free heap.
+     *
+     * @return a future that completes once every bot has its route.
+     */
+    public CompletableFuture<Void> preComputeRoutesAsync() {
+        return preComputeRoutesAsync(SearchControl.unlimited());
+    }
+
+    /**
+     * Same as {@link #preComputeRoutesAsync()}, but the searches stop at the limits of the given
+     * control, or when it is cancelled, and keep the best route found by then. Every improving
+     * route is visible through {@link #getOptimalPath} as soon as it is found.
+     *
+     * @param control limits shared by the searches of all bots.
+     * @return a future that completes once every bot's search has ended.
+     */
+    public CompletableFuture<Void> preComputeRoutesAsync(SearchControl control) {
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        double[] coinDistances = distances.coinMatrix();
+
+        CompletableFuture<?>[] botRoutes = new CompletableFuture<?>[botCount];
+        for (int i = 0; i < botCount; i++) {
+            double[] startDistances = distances.copyBotRow(i);
+            int botIndex = i;
+            MetricsRegistry routeMetrics = metrics;
+            botRoutes[i] = CompletableFuture.runAsync(() -> {
+                RouteSolver solver = new RouteSolver(startDistances, coinDistances);
+                optimalPaths.set(botIndex, solver.solve(pool, control, (route, length) -> optimalPaths.set(botIndex, route)));
+                routeStats[botIndex] = solver.getStats();
+                routeMetrics.recordSolve(routeStats[botIndex]);
+            }, pool);
         }
+        routesFuture = CompletableFuture.allOf(botRoutes);
+        return routesFuture;
+    }
+
+    /**
+     * Returns the best route found so far for a bot. It is optimal once the future returned by
+     * {@link #preComputeRoutesAsync} completed, unless the search was stopped early.
+     *
+     * @param botIndex Index of the bot.
+     * @return Coin indices in visiting order, or null if no route was found yet.
+     */
+    public int[] getOptimalPath(int botIndex) {
+        return optimalPaths.get(botIndex);
     }
 
-    private double calculateDistance(int x1, int y1, int x2, int y2) {
-        // Simple Euclidean distance. Adjust as necessary for your game's mechanics.
-        return Math.sqrt(Math.pow(x2 - x1, 2) + Math.pow(y2 - y1, 2));
+    /**
+     * Statistics of a bot's route search, or null while it is still running.
+     */
+    public SolverStats getRouteStats(int botIndex) {
+        return routesFuture != null && routesFuture.isDone() ? routeStats[botIndex] : null;
     }
+
     /**
      * Checks if all coins have been collected.
      *
      * @return true if all coins are collected, false otherwise.
      */
     public boolean allCoinsCollected() {
-        for (Coin coin : coins) {
-            if (!coin.isCollected()) {
-                return false;
+        return world.allCoinsCollected();
+    }
+
+    /**
+     * Coins still in play, counting the coins added during the game.
+     */
+    public int remainingCoins() {
+        return world.remainingCoins();
+    }
+
+    /**
+     * Adds a coin while the game runs, e.g. from a spawner. The coin may take the slot of a
+     * collected or removed coin, so indices stay dense in a game that keeps spawning.
+     * Only the bots around the coin are looked at: the nearest one that is idle or walks to a
+     * farther coin switches to it, and bots elsewhere keep their targets. With continuous
+     * re-optimization the assignment is repaired for the new coin instead. Bots following a fleet
+     * plan stick to it, so only a bot that finished its route takes the new coin.
+     *
+     * @return index of the new coin.
+     * @throws IllegalArgumentException if no coin may be placed there, see {@link #canPlaceCoin}.
+     */
+    public int addCoin(int x, int y) {
+        if (!canPlaceCoin(x, y)) {
+            throw new IllegalArgumentException("No room for a coin at " + x + ", " + y);
+        }
+        int coinIndex = takeFreeCoin();
+        if (coinIndex != -1) {
+            world.replaceCoin(coinIndex, x, y);
+            planner.coinChanged(coinIndex);
+        } else {
+            coinIndex = world.addCoin(x, y);
+            if (coinIndex == coinTargetedBy.length) {
+                int length = Math.max(16, coinIndex * 2);
+                coinTargetedBy = Arrays.copyOf(coinTargetedBy, length);
+                Arrays.fill(coinTargetedBy, coinIndex, length, -1);
+            }
+        }
+        distances.coinsChanged();
+        coinGrid.add(coinIndex);
+        if (recorder != null) {
+            recorder.coinAdded(tick, coinIndex, x, y);
+        }
+        if (continuousReoptimization) {
+            addAssignmentColumn(coinIndex);
+        } else {
+            if (fleetRoutes != null) {
+                unplannedCoins++;
             }
+            offerCoin(coinIndex);
+        }
+        return coinIndex;
+    }
+
+    /**
+     * Whether a coin may be added at a position: inside the panel, and as far from the walls as
+     * the coins of a generated layout, so that bots can reach it.
+     */
+    public boolean canPlaceCoin(int x, int y) {
+        return x >= 0 && y >= 0 && x < panelWidth && y < panelHeight
+                && !planner.wallIndex().near(x, y, Scenario.WALL_CLEARANCE);
+    }
+
+    /**
+     * Takes a coin out of the game without anybody scoring it. Only the bot walking to it picks
+     * a new coin, like after a collection.
+     */
+    public void removeCoin(int coinIndex) {
+        if (coinIndex < 0 || coinIndex >= world.coinCount() || world.isCollected(coinIndex)) {
+            throw new IllegalArgumentException("No coin in play at index " + coinIndex);
+        }
+        collectCoin(coinIndex);
+        if (recorder != null) {
+            recorder.coinRemoved(tick, coinIndex);
+        }
+        int botIndex = coinTargetedBy[coinIndex];
+        if (botIndex == -1) {
+            freeCoin(coinIndex);
+        } else {
+            retarget(botIndex);
         }
+    }
+
+    /**
+     * Adds a wall while the game runs, see {@link #setWalls}.
+     */
+    public void addWall(Wall wall) {
+        List<Wall> changed = new ArrayList<>(walls);
+        changed.add(wall);
+        setWalls(changed);
+    }
+
+    /**
+     * Removes a wall while the game runs, see {@link #setWalls}.
+     *
+     * @return false if the wall is not in the game.
+     */
+    public boolean removeWall(Wall wall) {
+        List<Wall> changed = new ArrayList<>(walls);
+        if (!changed.remove(wall)) {
+            return false;
+        }
+        setWalls(changed);
         return true;
     }
 
     /**
-     * Updates the positions of all bots towards their assigned coins.
+     * Replaces the walls while the game runs. The wall index, the visibility graph and the
+     * distance caches are built again, which costs about as much as starting a game on the new
+     * walls, and every bot plans its way to its coin again; the targets stay. Coins closer to a
+     * new wall than {@link #canPlaceCoin} allows are removed. A bot that a new wall runs over
+     * may get stuck.
+     */
+    public void setWalls(List<Wall> walls) {
+        List<Wall> previous = this.walls;
+        this.walls = Collections.unmodifiableList(new ArrayList<>(walls));
+        retiredWallChecks += planner.wallChecks();
+        planner = new PathPlanner(new WallIndex(this.walls), this.walls, world);
+        distances = new DistanceMatrix(world, planner);
+        if (recorder != null) {
+            recorder.walls(tick, this.walls);
+        }
+        removeCoinsNear(previous);
+        if (assignmentSolver != null) {
+            // Every cost changed, the next repair solves from scratch
+            assignmentSolver.invalidate();
+        }
+        for (int i = 0; i < botCount; i++) {
+            botWaypointCoin[i] = -1; // The waypoint is a node of the old graph
+            scheduleArrival(i);
+        }
+    }
+
+    /**
+     * Removes the coins that the walls not in the given list pass too close to.
+     */
+    private void removeCoinsNear(List<Wall> previous) {
+        List<Wall> added = new ArrayList<>(walls);
+        added.removeAll(previous);
+        if (added.isEmpty()) {
+            return;
+        }
+        WallIndex addedIndex = new WallIndex(added);
+        for (int coinIndex = 0; coinIndex < world.coinCount(); coinIndex++) {
+            if (!world.isCollected(coinIndex) && addedIndex.near(world.coinX[coinIndex], world.coinY[coinIndex], Scenario.WALL_CLEARANCE)) {
+                removeCoin(coinIndex);
+            }
+        }
+    }
+
+    /**
+     * Offers a new coin to the bots around it: the nearest bot that is idle or, unless the bots
+     * follow a fleet plan, whose coin is farther away takes it. The bots are hashed once per tick,
+     * so a burst of coins costs a few dozen distance checks per coin, not a pass over all bots.
+     * When nobody around takes the coin, idle bots anywhere get a chance at it.
+     */
+    private void offerCoin(int coinIndex) {
+        if (botGrid == null) {
+            // Cells of about twice the mean bot spacing, so the 3 x 3 cells around a coin hold a few dozen bots
+            double spacing = Math.sqrt((double) panelWidth * panelHeight / Math.max(1, botCount));
+            botGrid = new BotGrid(botCount, Math.max(1, (int) (2 * spacing)));
+        }
+        if (botGridTick != tick) {
+            botGrid.rebuild(world.botX, world.botY);
+            botGridTick = tick;
+        }
+        int coinX = world.coinX[coinIndex], coinY = world.coinY[coinIndex];
+        int cellX = botGrid.cell(coinX), cellY = botGrid.cell(coinY);
+        int best = -1, looked = 0;
+        double bestDistance = PathPlanner.UNREACHABLE;
+        search:
+        for (int dy = -1; dy <= 1; dy++) {
+            for (int dx = -1; dx <= 1; dx++) {
+                int bucket = botGrid.bucket(cellX + dx, cellY + dy);
+                for (int k = botGrid.bucketStart[bucket]; k < botGrid.bucketStart[bucket + 1]; k++) {
+                    if (looked++ == SPAWN_NEIGHBOURS) {
+                        break search;
+                    }
+                    int i = botGrid.sortedBots[k];
+                    int x = world.botX[i], y = world.botY[i];
+                    double distance = planner.distance(x, y, coinIndex);
+                    if (distance >= bestDistance) {
+                        continue;
+                    }
+                    int current = bestAssignment[i];
+                    if (current == -1 || world.isCollected(current)
+                            || fleetRoutes == null && distance < planner.distance(x, y, current)) {
+                        best = i;
+                        bestDistance = distance;
+                    }
+                }
+            }
+        }
+        if (best != -1) {
+            setTarget(best, coinIndex);
+        } else {
+            idleBotsNeedRetry = true;
+        }
+    }
+
+    /**
+     * Adds a new coin to a warm assignment and moves the bots it changes. A coin past the solver's
+     * room moves the solution over to a solver with twice the room, so a game that keeps growing
+     * lays its solver out anew once per doubling instead of solving from scratch for every coin.
      */
-    private boolean canMove(Bot bot, int newX, int newY) {
-        for (Wall wall : walls) {
-            if (lineIntersectsWall(bot.x, bot.y, newX, newY, wall)) {
-                return false; // Movement is blocked by a wall
+    private void addAssignmentColumn(int coinIndex) {
+        if (assignmentSolver == null || !assignmentSolver.isWarm()) {
+            return; // The next repair solves from scratch anyway
+        }
+        if (coinIndex >= assignmentSolver.columnCapacity()) {
+            long capacity = Math.max(2L * assignmentSolver.columnCapacity(), coinIndex + 1L);
+            if (!HungarianAssignment.canAllocate(botCount, capacity)) {
+                capacity = coinIndex + 1L;
+            }
+            if (!HungarianAssignment.canAllocate(botCount, capacity)) {
+                assignmentSolver.invalidate(); // The next repair falls back to greedy assignment
+                return;
             }
+            assignmentSolver = new HungarianAssignment(assignmentSolver, (int) capacity);
         }
-        return true; // No walls blocking the movement
+        for (int botIndex = 0; botIndex < botCount; botIndex++) {
+            // Straight from the planner: the cached rows are out of date for the new coin
+            assignmentSolver.setCost(botIndex, coinIndex, planner.distance(world.botX[botIndex], world.botY[botIndex], coinIndex));
+        }
+        assignmentSolver.addColumn(coinIndex);
+        applyAssignment();
     }
-    private boolean lineIntersectsWall(int x1, int y1, int x2, int y2, Wall wall) {
-        // Convert wall endpoints to line segment parameters
-        int x3 = wall.startX;
-        int y3 = wall.startY;
-        int x4 = wall.endX;
-        int y4 = wall.endY;
 
-        // Calculate parts of the equations needed for the intersection check
-        int den = (x1 - x2) * (y3 - y4) - (y1 - y2) * (x3 - x4);
-        if (den == 0) {
-            return false; // Lines are parallel
+    /**
+     * Remembers the slot of a gone coin that nothing refers to anymore.
+     */
+    private void freeCoin(int coinIndex) {
+        if (freeCoinCount == freeCoins.length) {
+            freeCoins = Arrays.copyOf(freeCoins, freeCoinCount * 2);
         }
+        freeCoins[freeCoinCount++] = coinIndex;
+    }
 
-        int tNum = (x1 - x3) * (y3 - y4) - (y1 - y3) * (x3 - x4);
-        int uNum = -((x1 - x2) * (y1 - y3) - (y1 - y2) * (x1 - x3));
+    /**
+     * A slot for a new coin, or -1 to append one.
+     */
+    private int takeFreeCoin() {
+        while (freeCoinCount > 0) {
+            int coinIndex = freeCoins[--freeCoinCount];
+            if (world.isCollected(coinIndex) && coinTargetedBy[coinIndex] == -1) {
+                return coinIndex;
+            }
+        }
+        return -1;
+    }
 
-        double t = tNum / (double) den;
-        double u = uNum / (double) den;
+    private boolean canMove(int x, int y, int newX, int newY) {
+        return planner.canStep(x, y, newX, newY); // False if movement is blocked by a wall
+    }
 
-        // If 0<=t<=1 and 0<=u<=1, the line segments intersect
-        return t >= 0 && t <= 1 && u >= 0 && u <= 1;
+    boolean lineIntersectsWall(int x1, int y1, int x2, int y2, Wall wall) {
+        return WallIndex.segmentIntersectsWall(x1, y1, x2, y2, wall);
     }
 
+    /**
+     * Updates the positions of all bots towards their assigned coins. Bots behind a wall walk
+     * to the next visibility graph waypoint first, and no step ever crosses a wall.
+     */
     public void updateBotPositions() {
-        for (int i = 0; i < bots.length; i++) {
+        if (metricsEnabled) {
+            stepStartNanos = System.nanoTime();
+        }
+        if (crowdAvoidance) {
+            moveCrowd();
+        } else {
+            for (int i = 0; i < botCount; i++) {
+                if (bestAssignment[i] != -1) {
+                    stepBot(i);
+                }
+            }
+        }
+        tick++;
+    }
+
+    /**
+     * Turns crowd avoidance on or off. When on, bots keep a few pixels apart instead of stacking
+     * on top of each other, see {@link CrowdMover}, and every bot is stepped each tick, also by
+     * {@link #advanceToNextEvent}, since any bot can be held up by another at any time.
+     */
+    public void setCrowdAvoidance(boolean enabled) {
+        if (enabled && crowd == null) {
+            crowd = new CrowdMover(botCount);
+        }
+        crowdAvoidance = enabled;
+    }
+
+    /**
+     * Steps every bot with a target at once, keeping them apart. The legs are picked one bot
+     * after the other, since the planner caches are not thread-safe; the steps are planned in
+     * parallel and then applied.
+     */
+    private void moveCrowd() {
+        for (int i = 0; i < botCount; i++) {
             if (bestAssignment[i] != -1) {
-                Coin targetCoin = coins[bestAssignment[i]];
-                // Simplified movement towards the target coin
-                if (bots[i].x < targetCoin.x) bots[i].x++;
-                else if (bots[i].x > targetCoin.x) bots[i].x--;
+                chooseLeg(i);
+            }
+        }
+        crowd.move(world.botX, world.botY, bestAssignment, botLegX, botLegY, planner.wallIndex());
+        for (int i = 0; i < botCount; i++) {
+            int newX = crowd.newX[i], newY = crowd.newY[i];
+            if (newX != world.botX[i] || newY != world.botY[i]) {
+                world.botX[i] = newX;
+                world.botY[i] = newY;
+                botMoved(i);
+            }
+            if (recorder != null && crowd.deflected[i]) {
+                // A replay cannot tell where another bot pushed this one
+                recorder.position(tick + 1, i, newX, newY);
+            }
+        }
+    }
+
+    /**
+     * Moves one bot a single step towards its current waypoint or target coin.
+     */
+    private void stepBot(int i) {
+        chooseLeg(i);
+        int x = world.botX[i], y = world.botY[i];
+        int targetX = botLegX[i], targetY = botLegY[i];
+
+        // Simplified movement towards the target, sliding along a wall if the diagonal step is blocked
+        int newX = x + Integer.signum(targetX - x);
+        int newY = y + Integer.signum(targetY - y);
+        if (newX == x && newY == y) {
+            return; // Already there
+        }
+        if (canMove(x, y, newX, newY)) {
+            world.botX[i] = newX;
+            world.botY[i] = newY;
+        } else if (newX != x && canMove(x, y, newX, y)) {
+            world.botX[i] = newX;
+        } else if (newY != y && canMove(x, y, x, newY)) {
+            world.botY[i] = newY;
+        } else {
+            return; // Blocked on both axes
+        }
+        botMoved(i); // Only bots that moved need their distances refreshed
+    }
+
+    /**
+     * Sets the point a bot walks to this tick: its current waypoint, or its target coin.
+     */
+    private void chooseLeg(int i) {
+        int coinIndex = bestAssignment[i];
+        int x = world.botX[i], y = world.botY[i];
+        int targetX = world.coinX[coinIndex], targetY = world.coinY[coinIndex];
+        if (planner.hasWalls()) {
+            // Pick a new waypoint when the target changed or the current waypoint is reached
+            int waypoint = botWaypoint[i];
+            if (botWaypointCoin[i] != coinIndex
+                    || waypoint != -1 && x == planner.nodeX(waypoint) && y == planner.nodeY(waypoint)) {
+                waypoint = planner.nextWaypoint(x, y, coinIndex);
+                botWaypoint[i] = waypoint;
+                botWaypointCoin[i] = coinIndex;
+            }
+            if (waypoint != -1) {
+                targetX = planner.nodeX(waypoint);
+                targetY = planner.nodeY(waypoint);
+            }
+        }
+        botLegX[i] = targetX;
+        botLegY[i] = targetY;
+        if (recorder != null) {
+            recorder.leg(tick, i, targetX, targetY);
+        }
+    }
 
-                if (bots[i].y < targetCoin.y) bots[i].y++;
-                else if (bots[i].y > targetCoin.y) bots[i].y--;
+    /**
+     * Moves one bot the given number of ticks along its current leg in one go. Only valid while
+     * the leg is clear and the bot does not reach its end before the last step, which the event
+     * queue guarantees.
+     */
+    private void advanceBot(int i, long steps) {
+        if (!botLegClear[i]) {
+            // The bot has an event every tick while its leg is blocked, so this is a single step
+            stepBot(i);
+            return;
+        }
+        int waypoint = botWaypoint[i];
+        int targetX = waypoint == -1 ? world.coinX[bestAssignment[i]] : planner.nodeX(waypoint);
+        int targetY = waypoint == -1 ? world.coinY[bestAssignment[i]] : planner.nodeY(waypoint);
+        int x = world.botX[i], y = world.botY[i];
+        world.botX[i] = x + Integer.signum(targetX - x) * (int) Math.min(steps, Math.abs(targetX - x));
+        world.botY[i] = y + Integer.signum(targetY - y) * (int) Math.min(steps, Math.abs(targetY - y));
+        if (world.botX[i] != x || world.botY[i] != y) {
+            botMoved(i);
+        }
+    }
+
+    private void botMoved(int i) {
+        distances.botMoved(i);
+        botCostStale[i] = true;
+    }
+
+    /**
+     * Jumps straight to the next tick at which a bot collects a coin or reaches a waypoint,
+     * moving every bot in closed form instead of pixel by pixel. Produces the same game as calling
+     * updateBotPositions and updateCoinCollections once per tick. With crowd avoidance or continuous
+     * re-optimization it advances a single tick, since then any bot's course can change on any tick.
+     *
+     * @return number of ticks advanced, 0 if no event is pending anymore.
+     */
+    public long advanceToNextEvent() {
+        if (metricsEnabled) {
+            stepStartNanos = System.nanoTime();
+        }
+        retryIdleBots();
+        dropStaleEvents();
+        if (arrivals.isEmpty()) {
+            return 0;
+        }
+        if (crowdAvoidance || continuousReoptimization) {
+            updateBotPositions();
+            updateCoinCollections();
+            return 1;
+        }
+        long steps = arrivals.peekTick() - tick;
+        for (int i = 0; i < botCount; i++) {
+            if (bestAssignment[i] != -1) {
+                advanceBot(i, steps);
             }
         }
+        tick += steps;
+        processArrivals();
+        repairAssignments();
+        if (metricsEnabled) {
+            finishStep(steps);
+        }
+        if (recorder != null) {
+            recorder.stepFinished(tick, score, world, bestAssignment);
+        }
+        return steps;
+    }
+
+    public long getTick() {
+        return tick;
+    }
 
-        // Check for reassessment condition
-        //int uncollectedCoins = (int) Arrays.stream(coins).filter(coin -> !coin.isCollected()).count();
-        //if (uncollectedCoins <= 3) { // Example threshold, adjust based on game dynamics
-            //reassessAssignments();
-        //}
+    /**
+     * Copies what the panel draws into a snapshot, reusing its arrays. Call it on the thread that
+     * steps the game.
+     */
+    public void writeSnapshot(WorldSnapshot snapshot) {
+        snapshot.tick = tick;
+        snapshot.score = score;
+        world.copyTo(snapshot);
+        snapshot.botTarget = WorldSnapshot.copy(bestAssignment, snapshot.botTarget);
+        snapshot.walls = walls;
     }
 
     /**
-     * Optimizes assignments of bots to coins to minimize total distance for the initial collection.
+     * Optimizes assignments of bots to uncollected coins to minimize the total distance, using the
+     * Hungarian algorithm. Every bot's current target is set to its assigned coin.
+     * When there are too many bots and coins for the solver's dense cost matrix, every bot without
+     * a live target takes the nearest untargeted coin instead, and continuous re-optimization is
+     * turned off.
      */
     public void optimizeAssignments() {
-        findBestAssignment(new int[bots.length], 0, 0.0);
+        long start = metricsEnabled ? System.nanoTime() : 0;
+        fleetRoutes = null;
+        int coinCount = world.coinCount();
+        if (!HungarianAssignment.canAllocate(botCount, coinCount)) {
+            assignmentSolver = null;
+            setContinuousReoptimization(false);
+            reassessAssignmentsForRemainingBots();
+            return;
+        }
+        if (assignmentSolver == null || !assignmentSolver.fits(botCount, coinCount)) {
+            // Room for coins added later, so a growing game does not allocate a solver for every coin
+            int capacity = assignmentSolver != null && HungarianAssignment.canAllocate(botCount, 2L * coinCount)
+                    ? coinCount * 2 : coinCount;
+            assignmentSolver = new HungarianAssignment(botCount, capacity);
+        }
+        assignmentSolver.prepare(botCount, coinCount);
+        for (int coinIndex = 0; coinIndex < coinCount; coinIndex++) {
+            if (world.isCollected(coinIndex)) {
+                assignmentSolver.deactivateColumn(coinIndex);
+            }
+        }
+        for (int botIndex = 0; botIndex < botCount; botIndex++) {
+            refreshCostRow(botIndex);
+        }
+        assignmentSolver.solve(assignmentColumns);
+        applyAssignment();
+        if (metricsEnabled) {
+            metrics.record(Metric.ASSIGNMENT_NANOS, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Splits the uncollected coins among the bots with the {@link FleetRouter}, so that the last
+     * coin is collected as early as possible, and makes every bot collect its share in order.
+     *
+     * @param budgetNanos time the router may spend improving the plan.
+     * @return coin indices of every bot in collection order.
+     */
+    public int[][] planFleetRoutes(long budgetNanos) {
+        FleetRouter router = new FleetRouter(world, distances, panelWidth, panelHeight);
+        int[][] plan = router.solve(budgetNanos);
+        metrics.recordSolve(router.getStats());
+        followFleetPlan(plan);
+        return plan;
+    }
+
+    /**
+     * Plans fleet routes in the background, so the game can go on while the router works. The
+     * router sees a copy of the current positions with its own distance caches, and never touches
+     * the engine. Nothing changes in the game until a plan is handed to {@link #followFleetPlan},
+     * typically from the listener on the thread that steps the game.
+     *
+     * @param control  limits and cancellation of the router's local search.
+     * @param listener receives the constructed plan and every plan with a shorter longest route.
+     *                 Called on the router's thread.
+     * @return a future with the router once it stopped, for its final plan and statistics.
+     */
+    public CompletableFuture<FleetRouter> planFleetRoutesAsync(SearchControl control, IncumbentListener<int[][]> listener) {
+        WorldState snapshot = world.copy();
+        List<Wall> wallSnapshot = walls;
+        MetricsRegistry routerMetrics = metrics;
+        return CompletableFuture.supplyAsync(() -> {
+            PathPlanner snapshotPlanner = new PathPlanner(new WallIndex(wallSnapshot), wallSnapshot, snapshot);
+            DistanceMatrix snapshotDistances = new DistanceMatrix(snapshot, snapshotPlanner);
+            FleetRouter router = new FleetRouter(snapshot, snapshotDistances, panelWidth, panelHeight);
+            router.solve(control, listener);
+            routerMetrics.recordSolve(router.getStats());
+            return router;
+        });
     }
 
     /**
-     * Recursive function to find the best assignment of coins to bots.
+     * Makes every bot collect its share of a fleet plan in order, skipping coins collected in
+     * the meantime. Can be called again with a better plan while the bots are under way.
+     * A bot that finished its route takes the nearest coin that is not in the plan, e.g. one added
+     * since, or otherwise stays where it is; taking over coins of other routes would only send it
+     * across the map for coins their own bots reach sooner.
+     *
+     * @param plan coin indices of every bot in collection order; the engine keeps a copy.
      */
-    private void findBestAssignment(int[] currentAssignment, int botIndex, double currentDistance) {
-        if (botIndex == bots.length) {//if all the bots got assignment
-            if (currentDistance < minDistance) {
-                minDistance = currentDistance;
-                System.arraycopy(currentAssignment, 0, bestAssignment, 0, bots.length);
+    public void followFleetPlan(int[][] plan) {
+        setContinuousReoptimization(false);
+        fleetRoutes = new int[plan.length][];
+        fleetProgress = new int[botCount];
+        fleetBot = new int[world.coinCount()];
+        fleetPosition = new int[world.coinCount()];
+        Arrays.fill(fleetBot, -1);
+        for (int botIndex = 0; botIndex < plan.length; botIndex++) {
+            int[] route = plan[botIndex].clone();
+            for (int position = 0; position < route.length; position++) {
+                if (world.isCollected(route[position])) {
+                    route[position] = -1; // Collected while the plan was made
+                } else {
+                    fleetBot[route[position]] = botIndex;
+                    fleetPosition[route[position]] = position;
+                }
             }
+            fleetRoutes[botIndex] = route;
+        }
+        unplannedCoins = 0;
+        for (int coinIndex = 0; coinIndex < fleetBot.length; coinIndex++) {
+            if (fleetBot[coinIndex] == -1 && !world.isCollected(coinIndex)) {
+                unplannedCoins++;
+            }
+        }
+        for (int botIndex = 0; botIndex < botCount; botIndex++) {
+            setTarget(botIndex, -1);
+        }
+        for (int botIndex = 0; botIndex < botCount; botIndex++) {
+            followFleetRoute(botIndex);
+        }
+    }
+
+    /**
+     * Points a bot at the next uncollected coin of its fleet route, or once the route is done at
+     * the nearest free coin outside the plan, if any.
+     */
+    private void followFleetRoute(int botIndex) {
+        int[] route = fleetRoutes[botIndex];
+        int position = fleetProgress[botIndex];
+        while (position < route.length && route[position] == -1) {
+            position++;
+        }
+        fleetProgress[botIndex] = position;
+        if (position < route.length) {
+            setTarget(botIndex, route[position]);
+        } else {
+            setTarget(botIndex, unplannedCoins > 0 ? nearestCoin(botIndex, unplannedCoin) : -1);
+        }
+    }
+
+    /**
+     * Turns continuous re-optimization on or off. When on, the assignment solver keeps its dual
+     * potentials between ticks: a collected coin only re-routes the bot that lost it, and a bot
+     * that moved only changes its own row, so the optimal assignment is kept for a fraction of
+     * the cost of a full solve. Bots follow the repaired assignment instead of the greedy
+     * {@link #reassignBot}. A moving bot's costs to the coins other than its own are only
+     * computed again every few pixels, so a tick does not look at every coin; the kept
+     * assignment may be off the optimum by that much per bot.
+     */
+    public void setContinuousReoptimization(boolean enabled) {
+        if (enabled && !continuousReoptimization && assignmentSolver != null) {
+            // Coins collected so far were not removed from the solver, the next repair solves from scratch
+            assignmentSolver.invalidate();
+        }
+        continuousReoptimization = enabled;
+    }
+
+    /**
+     * Updates the solver rows of the bots that moved and retargets the bots whose assigned coin
+     * changed. Falls back to a full solve when the repairs drifted too far from the optimum; the
+     * solver's costs are current by then, so it solves them again without asking the planner.
+     */
+    private void repairAssignments() {
+        if (!continuousReoptimization) {
             return;
         }
+        if (assignmentSolver == null || !assignmentSolver.isWarm()) {
+            optimizeAssignments();
+            return;
+        }
+        for (int botIndex = 0; botIndex < botCount; botIndex++) {
+            if (botCostStale[botIndex]) {
+                long dx = world.botX[botIndex] - costRowX[botIndex], dy = world.botY[botIndex] - costRowY[botIndex];
+                if (dx * dx + dy * dy > (long) COST_ROW_REFRESH * COST_ROW_REFRESH) {
+                    refreshCostRow(botIndex);
+                    assignmentSolver.updateRow(botIndex);
+                } else {
+                    refreshOwnCost(botIndex);
+                }
+            }
+        }
+        double limit = REOPTIMIZE_GAP * assignmentSolver.totalCost();
+        if (assignmentSolver.gapBound() > limit) {
+            assignmentSolver.tightenFreeColumns();
+        }
+        if (assignmentSolver.gapBound() > limit) {
+            assignmentSolver.solve(assignmentColumns);
+        }
+        applyAssignment();
+    }
 
-        for (int i = 0; i < coins.length; i++) {
-            if (!taken[i]) {
-                taken[i] = true;
-                double distanceToAdd = DistanceCalculator.calculateDistance(bots[botIndex].x, bots[botIndex].y, coins[i].x, coins[i].y);
-                currentAssignment[botIndex] = i; // Assign coin i to bot botIndex
+    /**
+     * Points every bot whose assigned coin changed at its new coin. Bots that keep their coin also
+     * keep their predicted arrival.
+     */
+    private void applyAssignment() {
+        for (int botIndex = 0; botIndex < botCount; botIndex++) {
+            int coinIndex = assignmentSolver.assignmentOf(botIndex);
+            if (coinIndex != bestAssignment[botIndex]) {
+                setTarget(botIndex, coinIndex);
+            }
+        }
+    }
 
-                findBestAssignment(currentAssignment, botIndex + 1, currentDistance + distanceToAdd);
-                taken[i] = false; // Backtrack
+    /**
+     * Computes the solver costs of a bot to every coin. Straight from the planner: with coins
+     * coming and going, the cached rows would be recomputed in full every tick anyway.
+     */
+    private void refreshCostRow(int botIndex) {
+        int x = world.botX[botIndex], y = world.botY[botIndex];
+        for (int coinIndex = 0; coinIndex < assignmentSolver.columnCount(); coinIndex++) {
+            if (!world.isCollected(coinIndex)) {
+                assignmentSolver.setCost(botIndex, coinIndex, planner.distance(x, y, coinIndex));
             }
         }
+        costRowX[botIndex] = x;
+        costRowY[botIndex] = y;
+        botCostStale[botIndex] = false;
+    }
+
+    /**
+     * Computes the solver cost of a bot to its own coin only, see {@link #COST_ROW_REFRESH}.
+     */
+    private void refreshOwnCost(int botIndex) {
+        int coinIndex = assignmentSolver.assignmentOf(botIndex);
+        if (coinIndex != -1) {
+            assignmentSolver.updateCost(botIndex, coinIndex, planner.distance(world.botX[botIndex], world.botY[botIndex], coinIndex));
+        }
+        botCostStale[botIndex] = false;
     }
 
     /**
      * Returns the assigned coin for a given bot index.
      *
      * @param botIndex Index of the bot.
-     * @return Assigned Coin object or null if no valid assignment exists.
+     * @return Index of the assigned coin, or -1 if no valid assignment exists.
      */
-    public Coin getAssignedCoin(int botIndex) {
-        if (botIndex >= 0 && botIndex < bestAssignment.length) {
-            int coinIndex = bestAssignment[botIndex];
-            if (coinIndex >= 0 && coinIndex < coins.length) {
-                return coins[coinIndex];
-            }
+    public int getAssignedCoin(int botIndex) {
+        if (botIndex >= 0 && botIndex < botCount) {
+            return bestAssignment[botIndex];
         }
-        return null;
+        return -1;
     }
 
     /**
@@ -240,122 +1093,269 @@ public class GameEngine {
      * @param botIndex The index of the bot that needs reassignment.
      */
     public void reassignBot(int botIndex) {
-        Bot bot = bots[botIndex];
-        double minDistance = Double.MAX_VALUE;
-        int closestCoinIndex = -1;
+        int closestCoinIndex = nearestCoin(botIndex, untargetedCoin);
+        if (closestCoinIndex != -1) {
+            setTarget(botIndex, closestCoinIndex);
+        }
+    }
 
-        for (int i = 0; i < coins.length; i++) {
-            if (!coins[i].isCollected() && !isCoinTargeted(i)) {
-                double distance = DistanceCalculator.calculateDistance(bot.x, bot.y, coins[i].x, coins[i].y);
+    /**
+     * Closest uncollected coin to a bot among the coins the filter accepts, or -1 if there is none.
+     */
+    private int nearestCoin(int botIndex, IntPredicate filter) {
+        int x = world.botX[botIndex], y = world.botY[botIndex];
+        int closestCoinIndex;
+        if (planner.hasWalls()) {
+            // The straight-line nearest coins are the candidates, the wall-aware distance decides
+            int found = coinGrid.nearest(x, y, REASSIGN_CANDIDATES, reassignCandidates, filter);
+            closestCoinIndex = -1;
+            double minDistance = Double.MAX_VALUE;
+            for (int k = 0; k < found; k++) {
+                double distance = planner.distance(x, y, reassignCandidates[k]);
                 if (distance < minDistance) {
                     minDistance = distance;
-                    closestCoinIndex = i;
+                    closestCoinIndex = reassignCandidates[k];
                 }
             }
+        } else {
+            closestCoinIndex = coinGrid.nearest(x, y, filter);
         }
+        return closestCoinIndex;
+    }
 
-        if (closestCoinIndex != -1) {
-            bot.currentTarget = closestCoinIndex;
+    /**
+     * Points a bot at a coin and keeps the coin to bot target map in sync.
+     * @param botIndex The index of the bot.
+     * @param coinIndex The index of the new target coin, or -1 to clear the target.
+     */
+    private void setTarget(int botIndex, int coinIndex) {
+        int previous = bestAssignment[botIndex];
+        if (previous != -1 && coinTargetedBy[previous] == botIndex) {
+            coinTargetedBy[previous] = -1;
+            if (!world.isCollected(previous)) {
+                idleBotsNeedRetry = true; // Another bot may want the released coin
+            } else if (previous != coinIndex) {
+                freeCoin(previous); // Nothing refers to the gone coin anymore
+            }
+        }
+        bestAssignment[botIndex] = coinIndex;
+        if (coinIndex != previous) {
+            if (coinIndex != -1) {
+                reassignments++;
+            }
+            if (recorder != null) {
+                recorder.assigned(tick, botIndex, coinIndex);
+            }
+        }
+        if (coinIndex != -1) {
             // Mark the coin as taken or targeted
-            bestAssignment[botIndex] = closestCoinIndex;
+            coinTargetedBy[coinIndex] = botIndex;
         }
+        scheduleArrival(botIndex);
     }
 
     /**
-     * Checks if a coin is currently targeted by any bot.
-     * @param coinIndex The index of the coin to check.
-     * @return true if the coin is targeted, false otherwise.
+     * Predicts when a bot's next event happens: collecting its target or reaching its waypoint.
+     * Bots move one step on both axes per tick, so the walk along a clear leg is known in closed form.
+     * @param botIndex The index of the bot.
      */
-    private boolean isCoinTargeted(int coinIndex) {
-        for (Bot bot : bots) {
-            if (bot.currentTarget != null && bot.currentTarget == coinIndex) {
-                return true;
+    private void scheduleArrival(int botIndex) {
+        botEventTick[botIndex] = -1;
+        int coinIndex = bestAssignment[botIndex];
+        if (coinIndex == -1) {
+            return;
+        }
+        int x = world.botX[botIndex], y = world.botY[botIndex];
+        int legX = world.coinX[coinIndex], legY = world.coinY[coinIndex];
+        int waypoint = -1;
+        if (planner.hasWalls()) {
+            waypoint = planner.nextWaypoint(x, y, coinIndex);
+            botWaypoint[botIndex] = waypoint;
+            botWaypointCoin[botIndex] = coinIndex;
+            if (waypoint != -1) {
+                legX = planner.nodeX(waypoint);
+                legY = planner.nodeY(waypoint);
             }
         }
-        return false;
+        botLegClear[botIndex] = !planner.hasWalls() || planner.clear(x, y, legX, legY);
+        if (recorder != null) {
+            recorder.leg(tick, botIndex, legX, legY);
+        }
+
+        long steps;
+        if (!botLegClear[botIndex]) {
+            steps = 1; // No clear route, the bot is stepped and checked every tick
+        } else {
+            int legLength = Math.max(Math.abs(legX - x), Math.abs(legY - y));
+            long collectStep = world.isCollected(coinIndex) ? -1 : collectionStep(botIndex, legX, legY, legLength, coinIndex);
+            if (collectStep != -1) {
+                steps = collectStep;
+            } else if (waypoint != -1) {
+                steps = legLength;
+            } else {
+                return; // Walks to the spot of an already collected coin and stays there
+            }
+        }
+        botEventTick[botIndex] = tick + Math.max(1, steps);
+        arrivals.push(botEventTick[botIndex], botIndex);
     }
-    public void updateCoinCollections() {
-        boolean needsReassessment = false;
-        for (int i = 0; i < bots.length; i++) {
-            Bot bot = bots[i];
-            if (bot.currentTarget != null) {
-                Coin targetCoin = coins[bot.currentTarget];
-                if (!targetCoin.isCollected() && botReachedCoin(bot, targetCoin)) {
-                    // Mark the coin as collected
-                    targetCoin.collect();
-                    score += 10;
-                    // Immediately reassign the bot to prevent it from targeting a collected coin
-                    reassignBot(i);
-                    // Flag that we might need to reassess assignments if other bots were targeting this coin
-                    needsReassessment = true;
-                }
+
+    /**
+     * First step along a leg after which the bot is within collection range of the coin.
+     * @return the step, or -1 if the bot does not get in range before the leg ends.
+     */
+    private long collectionStep(int botIndex, int legX, int legY, int legLength, int coinIndex) {
+        int botX = world.botX[botIndex], botY = world.botY[botIndex];
+        int coinX = world.coinX[coinIndex], coinY = world.coinY[coinIndex];
+        int dx = legX - botX, dy = legY - botY;
+        // Each step brings the bot at most one pixel closer on each axis
+        int first = Math.max(1, Math.max(Math.abs(coinX - botX), Math.abs(coinY - botY)) - COLLECT_DISTANCE);
+        for (int step = first; step <= Math.max(1, legLength); step++) {
+            int x = botX + Integer.signum(dx) * Math.min(step, Math.abs(dx));
+            int y = botY + Integer.signum(dy) * Math.min(step, Math.abs(dy));
+            if (DistanceCalculator.calculateSquaredDistance(x, y, coinX, coinY) <= (long) COLLECT_DISTANCE * COLLECT_DISTANCE) {
+                return step;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Whether a coin is in the current fleet plan and not collected yet.
+     */
+    private boolean fleetPlanned(int coinIndex) {
+        return coinIndex < fleetBot.length && fleetBot[coinIndex] != -1;
+    }
+
+    /**
+     * Marks a coin as collected, or removed, and takes it out of the spatial index.
+     * @param coinIndex The index of the collected coin.
+     */
+    private void collectCoin(int coinIndex) {
+        world.collect(coinIndex);
+        coinGrid.remove(coinIndex);
+        if (fleetRoutes != null) {
+            if (fleetPlanned(coinIndex)) {
+                // Out of the plan, so the slot means nothing to the routes once a new coin takes it
+                fleetRoutes[fleetBot[coinIndex]][fleetPosition[coinIndex]] = -1;
+                fleetBot[coinIndex] = -1;
             } else {
-                // If the bot doesn't have a current target, assign one
-                reassignBot(i);
+                unplannedCoins--;
             }
         }
+        if (continuousReoptimization && assignmentSolver != null) {
+            assignmentSolver.removeColumn(coinIndex);
+        }
+    }
 
-        // If any coin was collected, reassess to ensure all bots have correct assignments
-        if (needsReassessment) {
-            reassessAssignmentsForRemainingBots();
+    /**
+     * Collects the coins reached this tick. Only bots whose predicted arrival is due are looked at,
+     * instead of checking every bot and rescanning every bot after each collection.
+     */
+    public void updateCoinCollections() {
+        retryIdleBots();
+        processArrivals();
+        // Keep the assignment optimal for the new bot positions
+        repairAssignments();
+        if (metricsEnabled) {
+            finishStep(1);
+        }
+        if (recorder != null) {
+            recorder.stepFinished(tick, score, world, bestAssignment);
         }
     }
 
     /**
-     * Assigns the closest uncollected coin to each bot after it collects its current target.
+     * Handles every event due at the current tick, in bot index order.
      */
-    public void assignClosestCoin() {
-        // Reset the taken flags for a fresh assignment
-        Arrays.fill(taken, false);
+    private void processArrivals() {
+        dropStaleEvents();
+        while (!arrivals.isEmpty() && arrivals.peekTick() <= tick) {
+            int botIndex = arrivals.peekBot();
+            arrivals.pop();
+            botEventTick[botIndex] = -1;
 
-        for (int botIndex = 0; botIndex < bots.length; botIndex++) {
-            Bot bot = bots[botIndex];
-            double minDistance = Double.MAX_VALUE;
-            int closestCoinIndex = -1;
-
-            for (int coinIndex = 0; coinIndex < coins.length; coinIndex++) {
-                Coin coin = coins[coinIndex];
-                if (!coin.isCollected()) {
-                    double distance = DistanceCalculator.calculateDistance(bot.x, bot.y, coin.x, coin.y);
-                    if (distance < minDistance) {
-                        minDistance = distance;
-                        closestCoinIndex = coinIndex;
-                    }
+            int coinIndex = bestAssignment[botIndex];
+            if (coinIndex != -1 && !world.isCollected(coinIndex) && botReachedCoin(botIndex, coinIndex)) {
+                // Mark the coin as collected
+                collectCoin(coinIndex);
+                score += COIN_SCORE;
+                if (recorder != null) {
+                    recorder.collected(tick, botIndex, coinIndex);
                 }
+                // Immediately reassign the bot to prevent it from targeting a collected coin
+                retarget(botIndex);
+            }
+            if (botEventTick[botIndex] == -1) {
+                // Waypoint reached, no coin left to reassign to, or the prediction was off: plan the next leg
+                scheduleArrival(botIndex);
             }
+            dropStaleEvents();
+        }
+        retryIdleBots();
+    }
 
-            // Update the bot's target to the closest uncollected coin
-            if (closestCoinIndex != -1) {
-                bestAssignment[botIndex] = closestCoinIndex;
-                // Optionally mark the coin as "taken" if you want to prevent other bots from targeting it
-                taken[closestCoinIndex] = true;
+    /**
+     * Points a bot whose coin is gone at its next coin, the way the current mode picks coins.
+     */
+    private void retarget(int botIndex) {
+        if (fleetRoutes != null) {
+            followFleetRoute(botIndex);
+        } else if (continuousReoptimization) {
+            if (assignmentSolver != null && assignmentSolver.isWarm()) {
+                applyAssignment();
+            } else {
+                optimizeAssignments(); // Re-optimization was just turned on
             }
+        } else {
+            reassignBot(botIndex);
         }
     }
 
     /**
-     * Reassesses and reassigns bots to the closest uncollected and unassigned coins.
-     * Intended to be used when the number of remaining uncollected coins is low.
+     * Removes queue entries that were superseded by a newer event for the same bot.
      */
-    public void reassessAssignments() {
-        // First, mark all coins as unassigned
-        Arrays.fill(taken, false);
-        for (Bot bot : bots) {
-            bot.currentTarget = null; // Reset current target for all bots
+    private void dropStaleEvents() {
+        while (!arrivals.isEmpty() && botEventTick[arrivals.peekBot()] != arrivals.peekTick()) {
+            arrivals.pop();
         }
+    }
 
-        // Then, reassign each bot to its closest coin
-        for (int i = 0; i < bots.length; i++) {
-            reassignBot(i);
+    /**
+     * Gives bots without a live target another chance, after a coin was released by another bot.
+     */
+    private void retryIdleBots() {
+        if (!idleBotsNeedRetry) {
+            return;
+        }
+        idleBotsNeedRetry = false;
+        for (int i = 0; i < botCount; i++) {
+            if (bestAssignment[i] == -1 || world.isCollected(bestAssignment[i])) {
+                if (fleetRoutes != null) {
+                    followFleetRoute(i);
+                } else {
+                    reassignBot(i);
+                }
+                if (bestAssignment[i] == -1 || world.isCollected(bestAssignment[i])) {
+                    break; // No untargeted coin is left, for the other idle bots either
+                }
+            }
         }
     }
 
+    /**
+     * Reassesses the assignments of all bots to the uncollected coins. The Hungarian solver reuses
+     * its preallocated matrix, so this is cheap enough to run every tick.
+     */
+    public void reassessAssignments() {
+        optimizeAssignments();
+    }
+
     public void reassessAssignmentsForRemainingBots() {
         // Iterate through all bots
-        for (int i = 0; i < bots.length; i++) {
-            Bot bot = bots[i];
+        for (int i = 0; i < botCount; i++) {
             // Check if the bot's target has been collected or if it's targeting a collected coin
-            if (bot.currentTarget == null || coins[bot.currentTarget].isCollected()) {
+            if (bestAssignment[i] == -1 || world.isCollected(bestAssignment[i])) {
                 reassignBot(i); // Reassign bot to a new, uncollected coin
             }
         }
@@ -364,12 +1364,12 @@ public class GameEngine {
     /**
      * Checks if a bot has reached its assigned coin.
      *
-     * @param bot The bot in question.
-     * @param coin The target coin.
+     * @param botIndex The bot in question.
+     * @param coinIndex The target coin.
      * @return true if the bot is close enough to collect the coin, false otherwise.
      */
-    private boolean botReachedCoin(Bot bot, Coin coin) {
-        final double distanceThreshold = 5.0; // Define proximity for coin collection
-        return DistanceCalculator.calculateDistance(bot.x, bot.y, coin.x, coin.y) <= distanceThreshold;
+    private boolean botReachedCoin(int botIndex, int coinIndex) {
+        return DistanceCalculator.calculateSquaredDistance(world.botX[botIndex], world.botY[botIndex],
+                world.coinX[coinIndex], world.coinY[coinIndex]) <= (long) COLLECT_DISTANCE * COLLECT_DISTANCE;
     }
 }
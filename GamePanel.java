@@ -1,98 +1,168 @@
 import javax.swing.JPanel;
 import java.awt.*;
-import javax.swing.Timer;
 import java.awt.Graphics;
 import java.awt.Color;
 import java.awt.Font;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Random;
 
 public class GamePanel extends JPanel {
     private int width, height;
     private GameEngine gameEngine;
-    private long startTime;
-    private long elapsedTime = 0;
     private javax.swing.Timer timer;
 
+    // Milliseconds per game tick at speed 1
     private int botDelay=50;
 
+    // Milliseconds between repaints, about 60 frames per second
+    private static final int REPAINT_DELAY = 16;
+
+    // Time the fleet router may spend improving the plan while the bots are already moving
+    private static final long FLEET_PLAN_NANOS = 2_000_000_000L;
+
+    // Limits of the background fleet planning, cancelled once all coins are collected
+    private volatile SearchControl planControl;
+
+    // Steps the game on its own thread and hands snapshots of it to paintComponent
+    private final SimulationLoop simulation;
+
+    // Draws the snapshots with a cached layer for walls and coins, and holds the zoom and pan
+    private final WorldRenderer renderer = new WorldRenderer();
+
+    // Zoom factor per mouse wheel notch
+    private static final double ZOOM_STEP = 1.1;
+
+    private static final Font HUD_FONT = new Font("Arial", Font.BOLD, 16);
+
+    // Event log of the game, closed once all coins are collected; null if the game is not recorded
+    private GameRecorder recorder;
+
     public GamePanel(int width, int height) {
+        this(width, height, new Random().nextLong());
+    }
+
+    /**
+     * A game with the layout of the given seed; the seed is printed, so any game can be played again.
+     */
+    public GamePanel(int width, int height, long seed) {
         this.width = width;
         this.height = height;
-        this.gameEngine = new GameEngine(5,10,width,height); // Example: Initialize with 10 bots and coins
-
-        // Initialize and start the game timer
-        startTime = System.currentTimeMillis();
-        timer = new javax.swing.Timer(botDelay, e -> { // Consider updating more frequently for a smooth timer
-            gameEngine.updateBotPositions(); // Assuming this method moves the bots
-            gameEngine.updateCoinCollections(); // Check and update coin collections
-            // Trigger the backtracking optimization from here or within GamePanel after setup
-            //gameEngine.optimizeAssignments();
-
-            if (!gameEngine.allCoinsCollected()) {
-                elapsedTime = System.currentTimeMillis() - startTime;
-                repaint(); // Update the timer display
-            } else {
-                timer.stop(); // Stop the timer
-                System.out.println("All coins collected in: " + formatTime(elapsedTime));
-
+        this.gameEngine = new GameEngine(5, 10, width, height, seed, GameEngine.defaultWalls()); // Example: Initialize with 10 bots and coins
+        System.out.println("Seed: " + seed);
+        gameEngine.printLayout();
+        gameEngine.preComputeRoutesAsync(); // Routes are solved in the background while the panel renders
+
+        simulation = new SimulationLoop(gameEngine, botDelay * 1_000_000L, () -> {
+            if (planControl != null) {
+                planControl.cancel();
             }
+            stopRecording();
+            System.out.println("All coins collected in: " + formatTime(gameEngine.getTick() * botDelay));
         });
-        timer.start();
-    }
 
-    @Override
-    protected void paintComponent(Graphics g) {
-        super.paintComponent(g);
-        Graphics2D g2d = (Graphics2D) g;
+        // Mouse wheel zooms around the cursor, dragging pans, a double click resets the view
+        MouseAdapter viewControl = new MouseAdapter() {
+            private int lastX, lastY;
 
-        // Example for drawing a more appealing bot
-        for (Bot bot : gameEngine.bots) {
+            @Override
+            public void mousePressed(MouseEvent e) {
+                lastX = e.getX();
+                lastY = e.getY();
+            }
 
-            g2d.setColor(Color.black); // Bot color
-            g2d.fillOval(bot.x - 10, bot.y - 10, 40, 40); // Bot body
-            g2d.setColor(Color.white); // Eyes
-            g2d.fillOval(bot.x - 5, bot.y - 5, 5, 5);
-            g2d.fillOval(bot.x + 2, bot.y - 5, 5, 5);
-        }
+            @Override
+            public void mouseDragged(MouseEvent e) {
+                renderer.pan(e.getX() - lastX, e.getY() - lastY);
+                lastX = e.getX();
+                lastY = e.getY();
+                repaint();
+            }
 
-        // Example for drawing a more appealing coin
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                if (e.getClickCount() == 2) {
+                    renderer.resetView();
+                    repaint();
+                }
+            }
 
-        for (Coin coin : gameEngine.coins) {
-            if (!coin.isCollected()) {
-                g2d.setColor(Color.YELLOW); // Coin color
-                g2d.fillOval(coin.x - 10, coin.y - 10, 40, 40); // Coin shape
-                g2d.setColor(Color.BLACK); // Coin marking
-                g2d.drawString("$", coin.x - 5, coin.y + 5);
+            @Override
+            public void mouseWheelMoved(MouseWheelEvent e) {
+                renderer.zoomAt(e.getX(), e.getY(), Math.pow(ZOOM_STEP, -e.getPreciseWheelRotation()));
+                repaint();
+            }
+        };
+        addMouseListener(viewControl);
+        addMouseMotionListener(viewControl);
+        addMouseWheelListener(viewControl);
+
+        // The timer only repaints, the game itself runs on the simulation thread
+        timer = new javax.swing.Timer(REPAINT_DELAY, e -> {
+            repaint();
+            if (simulation.latest().allCoinsCollected()) {
+                timer.stop(); // The last snapshot is drawn by the repaint above
             }
+        });
+        timer.start();
+    }
 
-        }
-        // Example for drawing a more visually appealing wall
-        Stroke originalStroke = g2d.getStroke(); // Preserve the original stroke
-        g2d.setColor(Color.DARK_GRAY); // Wall color
-        g2d.setStroke(new BasicStroke(5)); // Set the stroke width to make the wall look thicker
+    /**
+     * Sets how many times faster than real time the game runs; 0 pauses it.
+     */
+    public void setSpeed(double speed) {
+        simulation.setSpeed(speed);
+    }
 
-        for(Wall wall: gameEngine.walls){
-            g.drawLine(wall.startX, wall.startY, wall.endX, wall.endY);
-        }
-        // Restore the original stroke
-        g2d.setStroke(originalStroke);
+    /**
+     * Lets the bots keep apart instead of stacking, see {@link CrowdMover}. Call it before
+     * {@link #startSimulation()}.
+     */
+    public void setCrowdAvoidance(boolean enabled) {
+        gameEngine.setCrowdAvoidance(enabled);
+    }
 
+    /**
+     * Records the game to an event log that {@link GameReplay} can play back. Call it before
+     * {@link #startSimulation()}. A game that is closed before it finished leaves a log without
+     * an index, which the replay rebuilds.
+     */
+    public void record(Path file) throws IOException {
+        recorder = new GameRecorder(file, gameEngine.toScenario());
+        gameEngine.setRecorder(recorder);
+    }
 
-        // Draw lines between bots and their assigned coins
-        for (int i = 0; i < gameEngine.bots.length; i++) {
-            Bot bot = gameEngine.bots[i];
-            Coin targetCoin = gameEngine.getAssignedCoin(i);
-            if (targetCoin != null) {
-                g.drawLine(bot.x, bot.y, targetCoin.x, targetCoin.y);
-            }
+    private void stopRecording() {
+        if (recorder == null) {
+            return;
+        }
+        gameEngine.setRecorder(null);
+        try {
+            recorder.close();
+        } catch (IOException e) {
+            System.err.println("Recording failed: " + e.getMessage());
         }
+        recorder = null;
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        super.paintComponent(g);
+        Graphics2D g2d = (Graphics2D) g;
+        // Everything is drawn from one snapshot, which the simulation thread does not touch while we hold it
+        WorldSnapshot world = simulation.latest();
+        renderer.paint(g2d, world, getWidth(), getHeight(), getBackground());
 
         // Draw the timer at the top of the screen
         g.setColor(Color.BLACK);
-        g.setFont(new Font("Arial", Font.BOLD, 16));
+        g.setFont(HUD_FONT);
         // Drawing bots, coins, etc., plus the timer text at the top
-        g.drawString("Time: " + formatTime(elapsedTime), 10, 20);
-        if (gameEngine.allCoinsCollected()){
-            g.drawString("All 10 coins were collected", 350, 20);
+        g.drawString("Time: " + formatTime(world.getTick() * botDelay), 10, 20);
+        if (world.allCoinsCollected()){
+            g.drawString("All " + world.coinCount() + " coins were collected", 350, 20);
         }
     }
 
@@ -106,13 +176,19 @@ public class GamePanel extends JPanel {
         // Call the method to find the optimal assignments of bots to coins.
         gameEngine.optimizeAssignments();
 
-        // Assuming optimizeAssignments updates bestAssignment and prepares for animation
-        // Now, start the animation timer to update bot positions and repaint the panel
-        //botDelay=50; // Milliseconds between updates
-        new Timer(botDelay, e -> {
-            gameEngine.updateBotPositions();
-            repaint(); // Repaint to reflect position updates
-        }).start();
+        // The bots start on the assignment right away; the fleet router works in the background and
+        // every better plan it finds takes over on the simulation thread, which steps the game
+        planControl = SearchControl.withTimeLimit(FLEET_PLAN_NANOS);
+        gameEngine.planFleetRoutesAsync(planControl, (plan, makespan) ->
+                simulation.submit(() -> {
+                    if (!gameEngine.allCoinsCollected()) {
+                        gameEngine.followFleetPlan(plan);
+                    }
+                })
+        ).thenAccept(router -> System.out.println("Fleet plan: " + router.getStats()));
+
+        // From here on only the simulation thread touches the engine
+        simulation.start();
     }
 
 
@@ -0,0 +1,378 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Records a game as a compact event log that {@link GameReplay} can seek in. The engine reports
+ * target changes, leg changes and collections as they happen; a bot's position follows from its
+ * leg alone, so positions are never logged per tick. Every {@link #DEFAULT_KEYFRAME_INTERVAL}
+ * ticks a keyframe with the full state is added, and a replay only has to walk the bots from the
+ * nearest keyframe. Coins and walls changed during the game are logged as events too; a keyframe
+ * refers to the full layout it was taken in, which is written next to it when it changed since
+ * the last one.
+ *
+ * The game thread only fills buffers. Full buffers are written by a background thread through a
+ * file channel and handed back for reuse, so recording neither blocks on the disk nor allocates
+ * while the game runs, unless the disk falls behind by more than the buffer pool.
+ *
+ * File layout, little-endian:
+ * <pre>
+ * scenario       coin positions and walls, in the format of {@link ScenarioFile}
+ * records        20 byte events: int type | bot &lt;&lt; 4, long tick, int a, int b; coin events
+ *                           carry the coin instead of the bot
+ *                walls: int WALLS, long tick, int wall count, per wall x1, y1, x2, y2
+ *                layouts: int LAYOUT, long tick, int coin count, coin x, coin y, int wall count, walls
+ *                keyframes: int KEYFRAME, long tick, int score, long layout offset (-1 for the
+ *                           scenario), int bot count, per bot x, y, coin, leg x, leg y,
+ *                           int word count, collected words
+ * index          long last tick, long keyframe count, per keyframe long tick and long file offset
+ * footer         long index offset, int FOOTER_MAGIC
+ * </pre>
+ * An event at tick t takes effect after the bots made their t-th step.
+ */
+public class GameRecorder implements Closeable {
+    static final int ASSIGN = 0;   // a = new target coin, -1 for none
+    static final int LEG = 1;      // a, b = point the bot walks to
+    static final int COLLECT = 2;  // a = collected coin
+    static final int KEYFRAME = 3;
+    static final int POSITION = 4; // a, b = where the bot is, for steps a replay cannot work out
+    static final int COIN = 5;     // a, b = position of a coin added to the game
+    static final int REMOVE = 6;   // the coin was taken out of the game
+    static final int WALLS = 7;
+    static final int LAYOUT = 8;
+
+    // Bits of the record header holding the type, the rest holds the bot or coin
+    static final int TYPE_BITS = 4;
+    static final int TYPE_MASK = (1 << TYPE_BITS) - 1;
+
+    static final int EVENT_BYTES = 20;
+    static final int FOOTER_MAGIC = 0x474F4C52; // "RLOG"
+    static final int FOOTER_BYTES = Long.BYTES + Integer.BYTES;
+
+    // Ticks between keyframes unless given otherwise
+    public static final int DEFAULT_KEYFRAME_INTERVAL = 1024;
+
+    private static final int BUFFER_BYTES = 256 * 1024;
+    private static final int BUFFER_COUNT = 8;
+
+    // Handed to the writer thread to make it stop
+    private static final ByteBuffer END = ByteBuffer.allocate(0);
+
+    private final FileChannel channel;
+    private final long keyframeInterval;
+    private final BlockingQueue<ByteBuffer> full = new ArrayBlockingQueue<>(BUFFER_COUNT + 1);
+    private final BlockingQueue<ByteBuffer> free = new ArrayBlockingQueue<>(BUFFER_COUNT);
+    private final Thread writer;
+    private volatile IOException writeError;
+
+    private ByteBuffer buffer;
+    private long position; // File offset of the next byte put into buffer
+
+    // Point every bot walks to as last recorded, to drop legs that did not change
+    private final int[] legX, legY;
+    private final boolean[] hasLeg;
+
+    // Tick and file offset of every keyframe, and the tick from which the next one is due
+    private long[] keyframeTicks = new long[64];
+    private long[] keyframeOffsets = new long[64];
+    private int keyframeCount;
+    private long nextKeyframeTick;
+    private long lastTick;
+    private boolean closed;
+
+    // Walls as last recorded, whether coins or walls changed since the last layout, and where it is
+    private List<Wall> walls;
+    private boolean layoutChanged;
+    private long layoutOffset = -1;
+
+    /**
+     * Creates the recording and writes the layout it starts from. The engine calls the recorder
+     * once it is set with {@link GameEngine#setRecorder}, which adds the first keyframe.
+     */
+    public GameRecorder(Path path, Scenario scenario, long keyframeInterval) throws IOException {
+        if (keyframeInterval < 1) {
+            throw new IllegalArgumentException("Keyframe interval must be at least 1 tick");
+        }
+        this.keyframeInterval = keyframeInterval;
+        legX = new int[scenario.botCount()];
+        legY = new int[scenario.botCount()];
+        hasLeg = new boolean[scenario.botCount()];
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        for (int i = 0; i < BUFFER_COUNT; i++) {
+            free.add(ByteBuffer.allocateDirect(BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN));
+        }
+        buffer = free.poll();
+        walls = scenario.walls;
+        writer = new Thread(this::writeBuffers, "recorder");
+        writer.setDaemon(true);
+        writer.start();
+        writeScenario(scenario);
+    }
+
+    public GameRecorder(Path path, Scenario scenario) throws IOException {
+        this(path, scenario, DEFAULT_KEYFRAME_INTERVAL);
+    }
+
+    void assigned(long tick, int botIndex, int coinIndex) {
+        event(ASSIGN, tick, botIndex, coinIndex, 0);
+    }
+
+    void leg(long tick, int botIndex, int x, int y) {
+        if (hasLeg[botIndex] && legX[botIndex] == x && legY[botIndex] == y) {
+            return;
+        }
+        hasLeg[botIndex] = true;
+        legX[botIndex] = x;
+        legY[botIndex] = y;
+        event(LEG, tick, botIndex, x, y);
+    }
+
+    void position(long tick, int botIndex, int x, int y) {
+        event(POSITION, tick, botIndex, x, y);
+    }
+
+    void collected(long tick, int botIndex, int coinIndex) {
+        event(COLLECT, tick, botIndex, coinIndex, 0);
+    }
+
+    void coinAdded(long tick, int coinIndex, int x, int y) {
+        layoutChanged = true;
+        event(COIN, tick, coinIndex, x, y);
+    }
+
+    void coinRemoved(long tick, int coinIndex) {
+        event(REMOVE, tick, coinIndex, 0, 0);
+    }
+
+    void walls(long tick, List<Wall> walls) {
+        this.walls = walls;
+        layoutChanged = true;
+        putInt(WALLS);
+        putLong(tick);
+        putWalls(walls);
+    }
+
+    /**
+     * Called by the engine after every tick or event jump, adds a keyframe when one is due.
+     */
+    void stepFinished(long tick, int score, WorldState world, int[] targets) {
+        lastTick = tick;
+        if (tick >= nextKeyframeTick) {
+            keyframe(tick, score, world, targets);
+        }
+    }
+
+    /**
+     * Writes the full state, so a replay can start here without reading anything before.
+     * Bots without a recorded leg walk to their target coin.
+     */
+    void keyframe(long tick, int score, WorldState world, int[] targets) {
+        if (layoutChanged) {
+            layout(tick, world);
+        }
+        if (keyframeCount == keyframeTicks.length) {
+            keyframeTicks = Arrays.copyOf(keyframeTicks, keyframeCount * 2);
+            keyframeOffsets = Arrays.copyOf(keyframeOffsets, keyframeCount * 2);
+        }
+        ensure(Integer.BYTES + Long.BYTES + 2 * Integer.BYTES);
+        keyframeTicks[keyframeCount] = tick;
+        keyframeOffsets[keyframeCount] = position;
+        keyframeCount++;
+        nextKeyframeTick = tick + keyframeInterval;
+        lastTick = Math.max(lastTick, tick);
+
+        putInt(KEYFRAME);
+        putLong(tick);
+        putInt(score);
+        putLong(layoutOffset);
+        putInt(world.botCount());
+        for (int i = 0; i < world.botCount(); i++) {
+            int coin = targets[i];
+            if (!hasLeg[i] && coin != -1) {
+                hasLeg[i] = true;
+                legX[i] = world.coinX[coin];
+                legY[i] = world.coinY[coin];
+            }
+            putInt(world.botX[i]);
+            putInt(world.botY[i]);
+            putInt(coin);
+            putInt(legX[i]);
+            putInt(legY[i]);
+        }
+        long[] words = world.collectedWords();
+        putInt(words.length);
+        for (long word : words) {
+            putLong(word);
+        }
+    }
+
+    /**
+     * Writes every coin slot and wall, for the keyframes from here on. Removed coins need no
+     * layout, the keyframes have them as collected.
+     */
+    private void layout(long tick, WorldState world) {
+        layoutOffset = position;
+        layoutChanged = false;
+        putInt(LAYOUT);
+        putLong(tick);
+        putInt(world.coinCount());
+        for (int[] section : new int[][] {world.coinX, world.coinY}) {
+            for (int i = 0; i < world.coinCount(); i++) {
+                putInt(section[i]);
+            }
+        }
+        putWalls(walls);
+    }
+
+    /**
+     * Writes the keyframe index and the footer, waits until everything is on disk and closes
+     * the file.
+     *
+     * @throws IOException if any write failed, also one of the background thread.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        try {
+            long indexOffset = position;
+            putLong(lastTick);
+            putLong(keyframeCount);
+            for (int i = 0; i < keyframeCount; i++) {
+                putLong(keyframeTicks[i]);
+                putLong(keyframeOffsets[i]);
+            }
+            putLong(indexOffset);
+            putInt(FOOTER_MAGIC);
+            closed = true;
+            handOff(buffer);
+            handOff(END);
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while finishing the recording", e);
+        } finally {
+            channel.close();
+        }
+        if (writeError != null) {
+            throw writeError;
+        }
+    }
+
+    private void writeScenario(Scenario scenario) {
+        putInt(ScenarioFile.MAGIC);
+        putInt(ScenarioFile.VERSION);
+        putInt(scenario.width);
+        putInt(scenario.height);
+        putLong(scenario.seed);
+        putInt(scenario.botCount());
+        putInt(scenario.coinCount());
+        putInt(scenario.walls.size());
+        for (int[] section : new int[][] {scenario.botX, scenario.botY, scenario.coinX, scenario.coinY}) {
+            for (int value : section) {
+                putInt(value);
+            }
+        }
+        putWallPoints(scenario.walls);
+    }
+
+    private void putWalls(List<Wall> walls) {
+        putInt(walls.size());
+        putWallPoints(walls);
+    }
+
+    private void putWallPoints(List<Wall> walls) {
+        for (Wall wall : walls) {
+            putInt(wall.startX);
+            putInt(wall.startY);
+            putInt(wall.endX);
+            putInt(wall.endY);
+        }
+    }
+
+    private void event(int type, long tick, int botIndex, int a, int b) {
+        ensure(EVENT_BYTES);
+        buffer.putInt(type | botIndex << TYPE_BITS);
+        buffer.putLong(tick);
+        buffer.putInt(a);
+        buffer.putInt(b);
+        position += EVENT_BYTES;
+    }
+
+    private void putInt(int value) {
+        ensure(Integer.BYTES);
+        buffer.putInt(value);
+        position += Integer.BYTES;
+    }
+
+    private void putLong(long value) {
+        ensure(Long.BYTES);
+        buffer.putLong(value);
+        position += Long.BYTES;
+    }
+
+    /**
+     * Makes room for the given number of bytes, handing the buffer to the writer if it is too full.
+     */
+    private void ensure(int bytes) {
+        if (closed) {
+            throw new IllegalStateException("The recording is closed");
+        }
+        if (buffer.remaining() >= bytes) {
+            return;
+        }
+        handOff(buffer);
+        try {
+            buffer = free.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the recorder", e);
+        }
+    }
+
+    private void handOff(ByteBuffer filled) {
+        try {
+            full.put(filled);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the recorder", e);
+        }
+    }
+
+    /**
+     * Body of the writer thread. After a failed write the buffers are still recycled, so the
+     * game goes on, and the error is thrown by close.
+     */
+    private void writeBuffers() {
+        long filePosition = 0;
+        try {
+            while (true) {
+                ByteBuffer next = full.take();
+                if (next == END) {
+                    return;
+                }
+                next.flip();
+                try {
+                    while (writeError == null && next.hasRemaining()) {
+                        filePosition += channel.write(next, filePosition);
+                    }
+                } catch (IOException e) {
+                    writeError = e;
+                }
+                next.clear();
+                free.put(next);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
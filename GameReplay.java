@@ -0,0 +1,458 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Plays back a recording made with a {@link GameRecorder}. Seeking to a tick loads the nearest
+ * keyframe at or before it and applies the events up to the tick. Between its events a bot walks
+ * straight towards its leg point, sliding along walls like in {@link GameEngine}, so clear legs
+ * are covered in one step and a seek costs about one keyframe interval of events, however far
+ * into the game it goes. Steps the replay cannot work out, such as a bot held up in a crowd, are
+ * recorded as positions. Seeking forward from the current tick continues where the last seek
+ * stopped, so playing a recording tick by tick only reads every event once. Coins and walls
+ * changed during the game are applied as they come; a keyframe brings the layout it was taken
+ * in, which is only read again when it is not the one already loaded.
+ *
+ * A recording that was not closed, e.g. because the game crashed, has no keyframe index; it is
+ * rebuilt by scanning the file, and the game ends with the last complete record.
+ */
+public class GameReplay implements Closeable {
+    // Largest part of the file mapped at once
+    private static final long WINDOW_BYTES = 64L * 1024 * 1024;
+
+    private final FileChannel channel;
+    private final Path path;
+    private final Scenario scenario;
+    private final long recordsEnd;
+    private long lastTick;
+
+    private long[] keyframeTicks;
+    private long[] keyframeOffsets;
+    private int keyframeCount;
+
+    // Mapped part of the file, starting at windowStart
+    private MappedByteBuffer window;
+    private long windowStart, windowEnd;
+
+    // State at the current tick; a bot's own position may lag behind until botTick
+    private long tick;
+    private int score;
+    private final WorldState world;
+    private final int[] botTarget, legX, legY;
+    private final long[] botTick;
+
+    // Walls at the current tick, and the file offset of the layout the coins and walls started
+    // from, -1 for the scenario; layoutChanged is set once events changed them since
+    private List<Wall> walls;
+    private WallIndex wallIndex;
+    private long loadedLayout = -1;
+    private boolean layoutChanged;
+
+    // File offset of the first record not applied yet, -1 before the first seek
+    private long readOffset = -1;
+
+    private GameReplay(FileChannel channel, Path path) throws IOException {
+        this.channel = channel;
+        this.path = path;
+        scenario = ScenarioFile.read(channel, path, true);
+        walls = scenario.walls;
+        wallIndex = new WallIndex(walls);
+        long recordsStart = ScenarioFile.fileSize(scenario.botCount(), scenario.coinCount(), scenario.walls.size());
+        int bots = scenario.botCount();
+        world = new WorldState(new int[bots], new int[bots], scenario.coinX, scenario.coinY);
+        botTarget = new int[bots];
+        legX = new int[bots];
+        legY = new int[bots];
+        botTick = new long[bots];
+
+        long size = channel.size();
+        long indexOffset = -1;
+        if (size - recordsStart >= GameRecorder.FOOTER_BYTES) {
+            long footer = size - GameRecorder.FOOTER_BYTES;
+            if (map(footer, GameRecorder.FOOTER_BYTES).getInt((int) (footer + Long.BYTES - windowStart)) == GameRecorder.FOOTER_MAGIC) {
+                indexOffset = window.getLong((int) (footer - windowStart));
+            }
+        }
+        if (indexOffset >= recordsStart && indexOffset < size - GameRecorder.FOOTER_BYTES) {
+            recordsEnd = indexOffset;
+            readIndex(indexOffset);
+        } else {
+            recordsEnd = scan(recordsStart, size);
+        }
+        if (keyframeCount == 0) {
+            throw new IOException("Recording has no keyframe: " + path);
+        }
+    }
+
+    public static GameReplay open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            return new GameReplay(channel, path);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Coin positions and walls of the recorded game, and the seed and size it was created with.
+     */
+    public Scenario getScenario() {
+        return scenario;
+    }
+
+    public long firstTick() {
+        return keyframeTicks[0];
+    }
+
+    public long lastTick() {
+        return lastTick;
+    }
+
+    public long getTick() {
+        return tick;
+    }
+
+    public int getScore() {
+        return score;
+    }
+
+    /**
+     * Number of coin slots at the current tick, with the coins added during the game.
+     */
+    public int coinCount() {
+        return world.coinCount();
+    }
+
+    /**
+     * Rebuilds the state at the given tick, clamped to the recorded ticks.
+     */
+    public void seek(long targetTick) throws IOException {
+        targetTick = Math.max(firstTick(), Math.min(lastTick, targetTick));
+        int keyframe = keyframeAtOrBefore(targetTick);
+        if (readOffset == -1 || targetTick < tick || keyframeTicks[keyframe] > tick) {
+            // Going back, or a keyframe is closer than the current tick
+            readOffset = loadKeyframe(keyframeOffsets[keyframe]);
+        }
+        while (readOffset < recordsEnd) {
+            map(readOffset, Integer.BYTES + Long.BYTES);
+            int header = window.getInt((int) (readOffset - windowStart));
+            long recordTick = window.getLong((int) (readOffset - windowStart + Integer.BYTES));
+            if (recordTick > targetTick) {
+                break;
+            }
+            int type = header & GameRecorder.TYPE_MASK;
+            if (type == GameRecorder.KEYFRAME || type == GameRecorder.LAYOUT) {
+                readOffset += recordBytes(readOffset, recordsEnd); // Same state as the events up to here
+                continue;
+            }
+            if (type == GameRecorder.WALLS) {
+                // Every bot walked up to here along the old walls
+                for (int i = 0; i < botTarget.length; i++) {
+                    advance(i, recordTick);
+                }
+                setWalls(readWalls(readOffset + Integer.BYTES + Long.BYTES));
+                layoutChanged = true;
+                readOffset += recordBytes(readOffset, recordsEnd);
+                continue;
+            }
+            map(readOffset, GameRecorder.EVENT_BYTES);
+            int base = (int) (readOffset - windowStart);
+            int index = header >>> GameRecorder.TYPE_BITS;
+            int a = window.getInt(base + 12), b = window.getInt(base + 16);
+            if (type == GameRecorder.COIN) {
+                if (index < world.coinCount()) {
+                    world.replaceCoin(index, a, b);
+                } else {
+                    world.addCoin(a, b);
+                }
+                layoutChanged = true;
+            } else if (type == GameRecorder.REMOVE) {
+                world.collect(index);
+            } else {
+                advance(index, recordTick);
+                if (type == GameRecorder.ASSIGN) {
+                    botTarget[index] = a;
+                } else if (type == GameRecorder.LEG) {
+                    legX[index] = a;
+                    legY[index] = b;
+                } else if (type == GameRecorder.POSITION) {
+                    world.botX[index] = a;
+                    world.botY[index] = b;
+                } else if (!world.isCollected(a)) {
+                    world.collect(a);
+                    score += GameEngine.COIN_SCORE;
+                }
+            }
+            readOffset += GameRecorder.EVENT_BYTES;
+        }
+        for (int i = 0; i < botTarget.length; i++) {
+            advance(i, targetTick);
+        }
+        tick = targetTick;
+    }
+
+    public boolean isCollected(int coinIndex) {
+        return world.isCollected(coinIndex);
+    }
+
+    /**
+     * Copies the state at the current tick into a snapshot for the {@link WorldRenderer}.
+     */
+    public void writeSnapshot(WorldSnapshot snapshot) {
+        snapshot.tick = tick;
+        snapshot.score = score;
+        world.copyTo(snapshot);
+        snapshot.botTarget = WorldSnapshot.copy(botTarget, snapshot.botTarget);
+        snapshot.walls = walls;
+    }
+
+    @Override
+    public void close() throws IOException {
+        window = null;
+        channel.close();
+    }
+
+    /**
+     * Walks a bot from its own tick to the given one. A clear leg is walked in closed form,
+     * a blocked one step by step with the sliding rule of {@link GameEngine}.
+     */
+    private void advance(int botIndex, long toTick) {
+        long steps = toTick - botTick[botIndex];
+        botTick[botIndex] = toTick;
+        if (steps <= 0 || botTarget[botIndex] == -1) {
+            return;
+        }
+        int[] botX = world.botX, botY = world.botY;
+        int targetX = legX[botIndex], targetY = legY[botIndex];
+        while (steps > 0) {
+            int x = botX[botIndex], y = botY[botIndex];
+            if (x == targetX && y == targetY) {
+                return;
+            }
+            if (PathPlanner.clear(wallIndex, x, y, targetX, targetY)) {
+                botX[botIndex] = x + Integer.signum(targetX - x) * (int) Math.min(steps, Math.abs(targetX - x));
+                botY[botIndex] = y + Integer.signum(targetY - y) * (int) Math.min(steps, Math.abs(targetY - y));
+                return;
+            }
+            int newX = x + Integer.signum(targetX - x);
+            int newY = y + Integer.signum(targetY - y);
+            if (!wallIndex.blocked(x, y, newX, newY)) {
+                botX[botIndex] = newX;
+                botY[botIndex] = newY;
+            } else if (newX != x && !wallIndex.blocked(x, y, newX, y)) {
+                botX[botIndex] = newX;
+            } else if (newY != y && !wallIndex.blocked(x, y, x, newY)) {
+                botY[botIndex] = newY;
+            } else {
+                return; // Blocked on both axes, and nothing changes until the next event
+            }
+            steps--;
+        }
+    }
+
+    /**
+     * Sets the state to a keyframe.
+     *
+     * @return file offset of the record after it.
+     */
+    private long loadKeyframe(long offset) throws IOException {
+        long position = offset + Integer.BYTES;
+        tick = readLong(position);
+        score = readInt(position + 8);
+        long layout = readLong(position + 12);
+        int bots = readInt(position + 20);
+        if (bots != botTarget.length) {
+            throw new IOException("Keyframe does not match the recorded scenario: " + path);
+        }
+        position += 24;
+        for (int i = 0; i < bots; i++) {
+            map(position, 5 * Integer.BYTES);
+            int base = (int) (position - windowStart);
+            world.botX[i] = window.getInt(base);
+            world.botY[i] = window.getInt(base + 4);
+            botTarget[i] = window.getInt(base + 8);
+            legX[i] = window.getInt(base + 12);
+            legY[i] = window.getInt(base + 16);
+            position += 5 * Integer.BYTES;
+        }
+        Arrays.fill(botTick, tick);
+        long[] collected = new long[readInt(position)];
+        position += Integer.BYTES;
+        for (int w = 0; w < collected.length; w++) {
+            collected[w] = readLong(position);
+            position += Long.BYTES;
+        }
+        loadLayout(layout, collected);
+        return position;
+    }
+
+    /**
+     * Sets the coins and walls to a layout record, or to the scenario for -1, with the given
+     * coins gone. The layout already loaded is kept if no event changed it.
+     */
+    private void loadLayout(long layout, long[] collected) throws IOException {
+        if (layout != loadedLayout || layoutChanged) {
+            if (layout == -1) {
+                world.setCoins(scenario.coinX, scenario.coinY, scenario.coinCount(), collected);
+                setWalls(scenario.walls);
+            } else {
+                long position = layout + Integer.BYTES + Long.BYTES;
+                int coins = readInt(position);
+                int[] coinX = readInts(position + Integer.BYTES, coins);
+                int[] coinY = readInts(position + Integer.BYTES + 4L * coins, coins);
+                world.setCoins(coinX, coinY, coins, collected);
+                setWalls(readWalls(position + Integer.BYTES + 8L * coins));
+            }
+            loadedLayout = layout;
+            layoutChanged = false;
+        } else {
+            world.setCoins(world.coinX, world.coinY, world.coinCount(), collected);
+        }
+    }
+
+    private void setWalls(List<Wall> walls) {
+        if (walls != this.walls) {
+            this.walls = walls;
+            wallIndex = new WallIndex(walls);
+        }
+    }
+
+    /**
+     * Reads a wall count and the walls that follow it.
+     */
+    private List<Wall> readWalls(long offset) throws IOException {
+        int count = readInt(offset);
+        int[] points = readInts(offset + Integer.BYTES, 4 * count);
+        List<Wall> walls = new ArrayList<>(count);
+        for (int i = 0; i < points.length; i += 4) {
+            walls.add(new Wall(points[i], points[i + 1], points[i + 2], points[i + 3]));
+        }
+        return walls;
+    }
+
+    private int[] readInts(long offset, int count) throws IOException {
+        int[] values = new int[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = readInt(offset + 4L * i);
+        }
+        return values;
+    }
+
+    /**
+     * Size of the record at the given offset, or -1 if the file ends before the record does.
+     */
+    private long recordBytes(long offset, long size) throws IOException {
+        int type = readInt(offset) & GameRecorder.TYPE_MASK;
+        long end;
+        if (type == GameRecorder.KEYFRAME) {
+            if (offset + 28 > size) {
+                return -1;
+            }
+            long wordsOffset = offset + 28 + 20L * readInt(offset + 24);
+            if (wordsOffset + Integer.BYTES > size) {
+                return -1;
+            }
+            end = wordsOffset + Integer.BYTES + (long) readInt(wordsOffset) * Long.BYTES;
+        } else if (type == GameRecorder.WALLS) {
+            if (offset + 16 > size) {
+                return -1;
+            }
+            end = offset + 16 + 16L * readInt(offset + 12);
+        } else if (type == GameRecorder.LAYOUT) {
+            if (offset + 16 > size) {
+                return -1;
+            }
+            long wallsOffset = offset + 16 + 8L * readInt(offset + 12);
+            if (wallsOffset + Integer.BYTES > size) {
+                return -1;
+            }
+            end = wallsOffset + Integer.BYTES + 16L * readInt(wallsOffset);
+        } else {
+            end = offset + GameRecorder.EVENT_BYTES;
+        }
+        return end > size ? -1 : end - offset;
+    }
+
+    private void readIndex(long indexOffset) throws IOException {
+        lastTick = readLong(indexOffset);
+        long count = readLong(indexOffset + Long.BYTES);
+        keyframeCount = (int) count;
+        keyframeTicks = new long[keyframeCount];
+        keyframeOffsets = new long[keyframeCount];
+        long position = indexOffset + 2 * Long.BYTES;
+        for (int i = 0; i < keyframeCount; i++) {
+            keyframeTicks[i] = readLong(position);
+            keyframeOffsets[i] = readLong(position + Long.BYTES);
+            position += 2 * Long.BYTES;
+        }
+    }
+
+    /**
+     * Rebuilds the keyframe index of a recording without one.
+     *
+     * @return end of the last complete record.
+     */
+    private long scan(long offset, long size) throws IOException {
+        keyframeTicks = new long[64];
+        keyframeOffsets = new long[64];
+        while (size - offset >= Integer.BYTES + Long.BYTES) {
+            long bytes = recordBytes(offset, size);
+            if (bytes == -1) {
+                break;
+            }
+            long recordTick = readLong(offset + Integer.BYTES);
+            if ((readInt(offset) & GameRecorder.TYPE_MASK) == GameRecorder.KEYFRAME) {
+                if (keyframeCount == keyframeTicks.length) {
+                    keyframeTicks = Arrays.copyOf(keyframeTicks, keyframeCount * 2);
+                    keyframeOffsets = Arrays.copyOf(keyframeOffsets, keyframeCount * 2);
+                }
+                keyframeTicks[keyframeCount] = recordTick;
+                keyframeOffsets[keyframeCount] = offset;
+                keyframeCount++;
+            }
+            lastTick = Math.max(lastTick, recordTick);
+            offset += bytes;
+        }
+        return offset;
+    }
+
+    private int keyframeAtOrBefore(long targetTick) {
+        int index = Arrays.binarySearch(keyframeTicks, 0, keyframeCount, targetTick);
+        return index >= 0 ? index : Math.max(0, -index - 2);
+    }
+
+    private int readInt(long offset) throws IOException {
+        map(offset, Integer.BYTES);
+        return window.getInt((int) (offset - windowStart));
+    }
+
+    private long readLong(long offset) throws IOException {
+        map(offset, Long.BYTES);
+        return window.getLong((int) (offset - windowStart));
+    }
+
+    /**
+     * Makes sure the given bytes are mapped, moving the window if they are not.
+     */
+    private MappedByteBuffer map(long offset, int bytes) throws IOException {
+        if (window == null || offset < windowStart || offset + bytes > windowEnd) {
+            long size = channel.size();
+            if (offset + bytes > size) {
+                throw new IOException("Truncated recording: " + path);
+            }
+            windowStart = offset;
+            windowEnd = Math.min(size, offset + WINDOW_BYTES);
+            window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, windowEnd - windowStart);
+            window.order(ByteOrder.LITTLE_ENDIAN);
+        }
+        return window;
+    }
+}
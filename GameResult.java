@@ -0,0 +1,26 @@
+/**
+ * Outcome of one simulated game.
+ */
+public class GameResult {
+    final long seed;
+    final long ticks;
+    final int score;
+    final long solverNanos; // Time spent optimizing the initial assignment
+    final long wallNanos;
+    final boolean completed; // False if the game hit the tick limit before all coins were collected
+
+    public GameResult(long seed, long ticks, int score, long solverNanos, long wallNanos, boolean completed) {
+        this.seed = seed;
+        this.ticks = ticks;
+        this.score = score;
+        this.solverNanos = solverNanos;
+        this.wallNanos = wallNanos;
+        this.completed = completed;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("seed=%d ticks=%d score=%d solver=%.3fms time=%.3fms completed=%b",
+                seed, ticks, score, solverNanos / 1e6, wallNanos / 1e6, completed);
+    }
+}
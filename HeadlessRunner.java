@@ -0,0 +1,268 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Runs games without Swing, stepping the engine in a tight loop as fast as the CPU allows.
+ *
+ * Usage: java HeadlessRunner [--seed N] [--games N] [--bots N] [--coins N] [--width N] [--height N]
+ *                            [--max-ticks N] [--wall x1,y1,x2,y2]... [--no-walls]
+ *                            [--threads N | --virtual-threads] [--events] [--reoptimize | --fleet] [--crowd]
+ *                            [--metrics | --jfr] [--scenario FILE | --save-scenario FILE] [--record FILE]
+ *                            [--spawn N]
+ *        java HeadlessRunner --replay FILE [--seek TICK]...
+ *
+ * Game i uses seed + i. Without --wall or --no-walls the two default walls of the interactive game are used.
+ * With --threads or --virtual-threads the games run in parallel on a {@link SimulationFarm}, whose game
+ * seeds are split from the given seed, and only the aggregated statistics are printed.
+ * With --events the engine jumps from one arrival event to the next instead of stepping every tick;
+ * the games and tick counts are the same, only faster on large panels. Games with --reoptimize or
+ * --crowd are still stepped every tick, since their bots can change course on any tick.
+ * With --reoptimize the bots keep following an optimal assignment that is repaired every tick,
+ * instead of greedily picking the nearest free coin after each collection. With --fleet the coins
+ * are split among the bots up front to finish as early as possible, see {@link FleetRouter}.
+ * With --crowd the bots keep apart instead of stacking, see {@link CrowdMover}.
+ * With --metrics the counters and timings of all games are printed at the end, see {@link Metric}.
+ * With --jfr they are written as flight recorder events instead, to a recording started with
+ * -XX:StartFlightRecording.
+ * With --scenario every game plays the layout of a scenario file, which overrides the seed, sizes and
+ * walls. With --save-scenario the layout of the first game is written to a scenario file instead of
+ * playing, see {@link ScenarioFile}.
+ * With --record a single game is recorded to an event log, see {@link GameRecorder}. With --replay
+ * a recording is loaded and the state at every given tick, or at its last tick, is printed.
+ * With --spawn a single game keeps getting N new coins at random free spots every tick, and runs
+ * for --max-ticks ticks however many coins are collected, to measure the throughput of a world
+ * that never runs out of coins.
+ */
+public class HeadlessRunner {
+    // Time the fleet router may spend on its plan before a game starts
+    private static final long FLEET_PLAN_NANOS = 1_000_000_000L;
+
+    public static void main(String[] args) throws IOException {
+        long seed = System.nanoTime();
+        int games = 1;
+        int numberOfBots = 5, numberOfCoins = 10;
+        int width = 800, height = 600;
+        long maxTicks = 10_000_000;
+        List<Wall> walls = GameEngine.defaultWalls();
+        boolean customWalls = false;
+        int threads = 0;
+        boolean virtualThreads = false;
+        boolean eventDriven = false;
+        AssignmentMode mode = AssignmentMode.GREEDY;
+        boolean crowdAvoidance = false;
+        int spawnPerTick = 0;
+        MetricsRegistry metrics = MetricsRegistry.DISABLED;
+        Path scenarioFile = null, saveScenarioFile = null, recordFile = null, replayFile = null;
+        List<Long> seekTicks = new ArrayList<>();
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--seed": seed = Long.parseLong(args[++i]); break;
+                case "--games": games = Integer.parseInt(args[++i]); break;
+                case "--bots": numberOfBots = Integer.parseInt(args[++i]); break;
+                case "--coins": numberOfCoins = Integer.parseInt(args[++i]); break;
+                case "--width": width = Integer.parseInt(args[++i]); break;
+                case "--height": height = Integer.parseInt(args[++i]); break;
+                case "--max-ticks": maxTicks = Long.parseLong(args[++i]); break;
+                case "--threads": threads = Integer.parseInt(args[++i]); break;
+                case "--virtual-threads": virtualThreads = true; break;
+                case "--events": eventDriven = true; break;
+                case "--reoptimize": mode = AssignmentMode.REOPTIMIZE; break;
+                case "--fleet": mode = AssignmentMode.FLEET; break;
+                case "--crowd": crowdAvoidance = true; break;
+                case "--spawn": spawnPerTick = Integer.parseInt(args[++i]); break;
+                case "--metrics": metrics = new LocalMetrics(); break;
+                case "--jfr": metrics = new JfrMetrics(); break;
+                case "--scenario": scenarioFile = Paths.get(args[++i]); break;
+                case "--save-scenario": saveScenarioFile = Paths.get(args[++i]); break;
+                case "--record": recordFile = Paths.get(args[++i]); break;
+                case "--replay": replayFile = Paths.get(args[++i]); break;
+                case "--seek": seekTicks.add(Long.parseLong(args[++i])); break;
+                case "--no-walls":
+                    walls = new ArrayList<>();
+                    customWalls = true;
+                    break;
+                case "--wall":
+                    if (!customWalls) {
+                        walls = new ArrayList<>();
+                        customWalls = true;
+                    }
+                    String[] parts = args[++i].split(",");
+                    walls.add(new Wall(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]),
+                            Integer.parseInt(parts[2]), Integer.parseInt(parts[3])));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+
+        if (replayFile != null) {
+            replay(replayFile, seekTicks);
+            return;
+        }
+        if (recordFile != null && (games != 1 || threads > 0 || virtualThreads)) {
+            throw new IllegalArgumentException("--record plays a single game without --threads or --virtual-threads");
+        }
+        if (spawnPerTick > 0 && (games != 1 || threads > 0 || virtualThreads || eventDriven)) {
+            throw new IllegalArgumentException("--spawn plays a single game tick by tick, without --games, --threads, --virtual-threads or --events");
+        }
+        if (saveScenarioFile != null) {
+            long start = System.nanoTime();
+            ScenarioFile.write(saveScenarioFile, Scenario.generate(numberOfBots, numberOfCoins, width, height, seed, walls));
+            System.out.printf("Wrote %s in %.3fms%n", saveScenarioFile, (System.nanoTime() - start) / 1e6);
+            return;
+        }
+        Scenario scenario = null;
+        if (scenarioFile != null) {
+            long start = System.nanoTime();
+            scenario = ScenarioFile.read(scenarioFile);
+            System.out.printf("Loaded %d bots, %d coins and %d walls in %.3fms%n",
+                    scenario.botCount(), scenario.coinCount(), scenario.walls.size(), (System.nanoTime() - start) / 1e6);
+        }
+
+        if (threads > 0 || virtualThreads) {
+            SimulationFarm farm = virtualThreads ? SimulationFarm.virtualThreads() : SimulationFarm.fixedPool(threads);
+            farm.setMetrics(metrics);
+            farm.setCrowdAvoidance(crowdAvoidance);
+            try {
+                FarmStats stats = scenario != null
+                        ? farm.run(games, scenario, maxTicks, eventDriven, mode, result -> { })
+                        : farm.run(games, seed, numberOfBots, numberOfCoins, width, height, walls, maxTicks, eventDriven, mode, result -> { });
+                System.out.print(stats.summary());
+            } finally {
+                farm.shutdown();
+            }
+            printMetrics(metrics);
+            return;
+        }
+
+        long start = System.nanoTime();
+        long totalTicks = 0;
+        for (int game = 0; game < games; game++) {
+            long gameSeed = scenario != null ? scenario.seed : seed + game;
+            GameEngine engine = scenario != null ? new GameEngine(scenario)
+                    : new GameEngine(numberOfBots, numberOfCoins, width, height, gameSeed, walls);
+            engine.setMetrics(metrics);
+            engine.setCrowdAvoidance(crowdAvoidance);
+            GameRecorder recorder = recordFile != null ? new GameRecorder(recordFile, engine.toScenario()) : null;
+            engine.setRecorder(recorder);
+            GameResult result = spawnPerTick > 0 ? runSpawningGame(engine, gameSeed, maxTicks, mode, spawnPerTick)
+                    : runGame(engine, gameSeed, maxTicks, eventDriven, mode);
+            if (recorder != null) {
+                engine.setRecorder(null);
+                recorder.close();
+            }
+            totalTicks += result.ticks;
+            System.out.println(result);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%d games in %.3fs (%.0f games/min, %.0f ticks/s)%n",
+                games, seconds, games / seconds * 60, totalTicks / seconds);
+        printMetrics(metrics);
+    }
+
+    private static void replay(Path file, List<Long> seekTicks) throws IOException {
+        long start = System.nanoTime();
+        try (GameReplay replay = GameReplay.open(file)) {
+            System.out.printf("Loaded recording of seed %d, ticks %d to %d, in %.3fms%n", replay.getScenario().seed,
+                    replay.firstTick(), replay.lastTick(), (System.nanoTime() - start) / 1e6);
+            if (seekTicks.isEmpty()) {
+                seekTicks.add(replay.lastTick());
+            }
+            WorldSnapshot snapshot = new WorldSnapshot();
+            for (long tick : seekTicks) {
+                start = System.nanoTime();
+                replay.seek(tick);
+                replay.writeSnapshot(snapshot);
+                System.out.printf("tick=%d score=%d coins left=%d seek=%.3fms%n",
+                        snapshot.getTick(), snapshot.getScore(), snapshot.remainingCoins, (System.nanoTime() - start) / 1e6);
+            }
+        }
+    }
+
+    private static void printMetrics(MetricsRegistry metrics) {
+        if (metrics instanceof LocalMetrics) {
+            System.out.print(((LocalMetrics) metrics).report());
+        } else if (metrics instanceof JfrMetrics) {
+            ((JfrMetrics) metrics).close();
+        }
+    }
+
+    /**
+     * Plays one game to the end, the same way the interactive panel does but without delays.
+     *
+     * @param engine      a freshly created engine.
+     * @param seed        seed the engine was created with, only used for reporting.
+     * @param maxTicks    tick limit after which the game is given up.
+     * @param eventDriven jump from event to event instead of stepping every tick.
+     * @param mode        how the bots pick their coins.
+     */
+    public static GameResult runGame(GameEngine engine, long seed, long maxTicks, boolean eventDriven, AssignmentMode mode) {
+        long start = System.nanoTime();
+        if (mode == AssignmentMode.FLEET) {
+            engine.planFleetRoutes(FLEET_PLAN_NANOS);
+        } else {
+            engine.setContinuousReoptimization(mode == AssignmentMode.REOPTIMIZE);
+            engine.optimizeAssignments();
+        }
+        long solverNanos = System.nanoTime() - start;
+        long ticks = 0;
+        while (!engine.allCoinsCollected() && ticks < maxTicks) {
+            if (eventDriven) {
+                long advanced = engine.advanceToNextEvent();
+                if (advanced == 0) {
+                    break; // Nothing will ever happen again
+                }
+                ticks += advanced;
+            } else {
+                engine.updateBotPositions();
+                engine.updateCoinCollections();
+                ticks++;
+            }
+        }
+        return new GameResult(seed, ticks, engine.getScore(), solverNanos, System.nanoTime() - start, engine.allCoinsCollected());
+    }
+
+    /**
+     * Plays one game for a fixed number of ticks while new coins keep appearing, and prints how
+     * many coins were spawned and collected per second.
+     *
+     * @param spawnPerTick coins added at random positions before every tick.
+     */
+    public static GameResult runSpawningGame(GameEngine engine, long seed, long ticks, AssignmentMode mode, int spawnPerTick) {
+        long start = System.nanoTime();
+        if (mode == AssignmentMode.FLEET) {
+            engine.planFleetRoutes(FLEET_PLAN_NANOS);
+        } else {
+            engine.setContinuousReoptimization(mode == AssignmentMode.REOPTIMIZE);
+            engine.optimizeAssignments();
+        }
+        long solverNanos = System.nanoTime() - start;
+        Scenario layout = engine.toScenario();
+        Random random = new Random(seed);
+        long spawnNanos = 0;
+        for (long tick = 0; tick < ticks; tick++) {
+            long spawnStart = System.nanoTime();
+            for (int i = 0; i < spawnPerTick; i++) {
+                int x, y;
+                do {
+                    x = random.nextInt(layout.width);
+                    y = random.nextInt(layout.height);
+                } while (!engine.canPlaceCoin(x, y));
+                engine.addCoin(x, y);
+            }
+            spawnNanos += System.nanoTime() - spawnStart;
+            engine.updateBotPositions();
+            engine.updateCoinCollections();
+        }
+        long nanos = System.nanoTime() - start - solverNanos;
+        System.out.printf("%d coins spawned, %d collected, %d left: %.0f ticks/s, %.0f spawns/s, %.3fus per spawn%n",
+                ticks * spawnPerTick, engine.getScore() / GameEngine.COIN_SCORE, engine.remainingCoins(),
+                ticks / (nanos / 1e9), ticks * spawnPerTick / (nanos / 1e9), spawnNanos / 1e3 / Math.max(1, ticks * spawnPerTick));
+        return new GameResult(seed, ticks, engine.getScore(), solverNanos, System.nanoTime() - start, engine.allCoinsCollected());
+    }
+}
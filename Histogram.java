@@ -0,0 +1,73 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram of non-negative values with one bucket per power of two. Percentiles are
+ * the upper bound of the bucket they fall in, so they are off by at most a factor of two, which
+ * is plenty to tell a 20 microsecond tick from a 2 ms one.
+ */
+public class Histogram {
+    // Bucket b holds the values whose highest set bit is bit b - 1, bucket 0 holds zero
+    private final AtomicLongArray buckets = new AtomicLongArray(Long.SIZE + 1);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    public void record(long value) {
+        value = Math.max(0, value);
+        buckets.incrementAndGet(Long.SIZE - Long.numberOfLeadingZeros(value));
+        count.increment();
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    public long count() {
+        return count.sum();
+    }
+
+    public long sum() {
+        return sum.sum();
+    }
+
+    public long max() {
+        return max.get();
+    }
+
+    public double mean() {
+        long n = count();
+        return n == 0 ? 0 : (double) sum() / n;
+    }
+
+    /**
+     * Value below which the given fraction of the samples lie, rounded up to a power of two
+     * and capped at the largest sample.
+     *
+     * @param quantile between 0 and 1.
+     */
+    public long percentile(double quantile) {
+        long n = count();
+        if (n == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(quantile * n));
+        long seen = 0;
+        for (int b = 0; b < buckets.length(); b++) {
+            seen += buckets.get(b);
+            if (seen >= rank) {
+                long upper = b == 0 ? 0 : b >= Long.SIZE ? Long.MAX_VALUE : (1L << b) - 1;
+                return Math.min(upper, max());
+            }
+        }
+        return max();
+    }
+
+    public void reset() {
+        for (int b = 0; b < buckets.length(); b++) {
+            buckets.set(b, 0);
+        }
+        count.reset();
+        sum.reset();
+        max.reset();
+    }
+}
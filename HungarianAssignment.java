@@ -0,0 +1,481 @@
+import java.util.Arrays;
+
+/**
+ * Solves the rectangular assignment problem (each row to at most one column, minimum total cost)
+ * with the O(n^3) Hungarian algorithm. All arrays are allocated once for the largest problem, so
+ * the same instance can be reused every tick without allocating.
+ *
+ * When there are more rows than columns, zero cost idle columns are added until every row can be
+ * matched; rows matched to an idle column are reported as unassigned.
+ *
+ * After a solve the dual potentials and the matching are kept, so small changes can be repaired
+ * instead of solving from scratch: removing a column re-augments only the row that lost it, a
+ * changed row only re-augments if its matched edge stopped being the cheapest in reduced cost, and
+ * an added column only re-augments the rows it is cheaper for than their potential allows, plus
+ * the row of an idle column that is no longer needed.
+ * Such a repair can leave a freed column with a negative potential; {@link #gapBound()} reports
+ * how far the kept assignment can be from the optimum because of that.
+ */
+public class HungarianAssignment {
+    // Tolerance for comparing reduced costs
+    private static final double EPSILON = 1e-9;
+
+    // Largest array the JVM reliably allocates
+    private static final long MAX_ARRAY_LENGTH = Integer.MAX_VALUE - 8;
+
+    // Row-major cost matrix with a row for every column the solver has room for:
+    // cost[row * maxCols + col]
+    private final double[] cost;
+    private final int maxCols;
+
+    // Dimensions of the current problem; the columns from cols to maxCols are inactive
+    private int rows, cols;
+
+    // Columns that take part in the problem, and how many do
+    private final boolean[] active;
+    private int activeCount;
+
+    // Number of zero cost idle columns, which follow the room for real columns
+    private int idleCount;
+
+    // Dual potentials of the rows and columns (1-based, index 0 is a sentinel)
+    private final double[] u, v;
+
+    // p[j]: row matched to column j (1-based, 0 if free), way[j]: previous column on the augmenting path
+    private final int[] p, way;
+
+    // Column matched to every row (0-based), -1 if the row is unassigned
+    private final int[] rowMatch;
+
+    // Scratch arrays for the shortest augmenting path search
+    private final double[] minv;
+    private final boolean[] used;
+
+    // Whether the potentials and matching describe the current problem and can be repaired
+    private boolean warm;
+
+    /**
+     * Creates a solver for problems of up to maxRows x maxCols.
+     *
+     * @throws IllegalArgumentException if the cost matrix of that size does not fit in one array;
+     *                                  check with {@link #canAllocate} first.
+     */
+    public HungarianAssignment(int maxRows, int maxCols) {
+        if (!canAllocate(maxRows, maxCols)) {
+            throw new IllegalArgumentException("A " + maxRows + " x " + maxCols
+                    + " cost matrix is too large for the dense assignment solver");
+        }
+        this.maxCols = maxCols;
+        int size = maxCols + maxRows + 1;
+        cost = new double[maxRows * maxCols];
+        active = new boolean[maxCols];
+        u = new double[size];
+        v = new double[size];
+        p = new int[size];
+        way = new int[size];
+        rowMatch = new int[maxRows];
+        minv = new double[size];
+        used = new boolean[size];
+    }
+
+    /**
+     * A solver with room for more columns that continues the solution of another one, warm or
+     * not, so a growing problem is laid out anew once per growth instead of solved from scratch.
+     *
+     * @param maxCols column room of the new solver, at least that of the other one.
+     */
+    public HungarianAssignment(HungarianAssignment other, int maxCols) {
+        this(other.rowMatch.length, Math.max(maxCols, other.maxCols));
+        rows = other.rows;
+        cols = other.cols;
+        activeCount = other.activeCount;
+        idleCount = other.idleCount;
+        warm = other.warm;
+        for (int row = 0; row < rows; row++) {
+            System.arraycopy(other.cost, row * other.maxCols, cost, row * this.maxCols, cols);
+        }
+        System.arraycopy(other.active, 0, active, 0, cols);
+        System.arraycopy(other.u, 0, u, 0, rows + 1);
+        // The real columns keep their place, the idle ones move behind the new room
+        System.arraycopy(other.v, 0, v, 0, cols + 1);
+        System.arraycopy(other.p, 0, p, 0, cols + 1);
+        System.arraycopy(other.v, other.maxCols + 1, v, this.maxCols + 1, idleCount);
+        System.arraycopy(other.p, other.maxCols + 1, p, this.maxCols + 1, idleCount);
+        for (int row = 0; row < rows; row++) {
+            int col = other.rowMatch[row];
+            rowMatch[row] = col >= other.maxCols ? col - other.maxCols + this.maxCols : col;
+        }
+    }
+
+    /**
+     * Whether a solver for problems of up to maxRows x maxCols can be created at all, i.e. its
+     * cost matrix fits in one array.
+     */
+    public static boolean canAllocate(long maxRows, long maxCols) {
+        return maxRows * maxCols <= MAX_ARRAY_LENGTH && maxRows + maxCols < MAX_ARRAY_LENGTH;
+    }
+
+    /**
+     * Whether a problem of the given size fits the arrays allocated up front.
+     */
+    public boolean fits(int rows, int cols) {
+        return rows <= rowMatch.length && cols <= active.length;
+    }
+
+    /**
+     * Sets the dimensions of the next problem, with every column active. Costs must be filled
+     * with {@link #setCost} afterwards.
+     */
+    public void prepare(int rows, int cols) {
+        this.rows = rows;
+        this.cols = cols;
+        Arrays.fill(active, 0, cols, true);
+        Arrays.fill(active, cols, maxCols, false);
+        activeCount = cols;
+        idleCount = 0;
+        warm = false;
+    }
+
+    public void setCost(int row, int col, double value) {
+        cost[row * maxCols + col] = value;
+    }
+
+    /**
+     * Excludes a column from the next cold solve. Use {@link #removeColumn} to drop it from a warm solution.
+     */
+    public void deactivateColumn(int col) {
+        if (active[col]) {
+            active[col] = false;
+            activeCount--;
+        }
+    }
+
+    /**
+     * Forgets the current solution, so the next repair is refused until the next {@link #solve}.
+     */
+    public void invalidate() {
+        warm = false;
+    }
+
+    public boolean isWarm() {
+        return warm;
+    }
+
+    /**
+     * Number of columns of the current problem, active or not.
+     */
+    public int columnCount() {
+        return cols;
+    }
+
+    /**
+     * Number of columns the solver has room for; {@link #addColumn} takes any column below it.
+     */
+    public int columnCapacity() {
+        return maxCols;
+    }
+
+    /**
+     * Column assigned to a row by the last solve or repair, or -1.
+     */
+    public int assignmentOf(int row) {
+        return rowMatch[row] < maxCols ? rowMatch[row] : -1;
+    }
+
+    /**
+     * Finds the minimum cost assignment. When there are more rows than columns, the surplus rows
+     * stay unassigned, and the other way round for columns.
+     *
+     * @param assignment receives the column of every row, or -1 if the row is unassigned.
+     * @return total cost of the assignment.
+     */
+    public double solve(int[] assignment) {
+        Arrays.fill(rowMatch, 0, rows, -1);
+        idleCount = Math.max(0, rows - activeCount);
+
+        // Potentials start at zero, then every row is added with one augmenting path
+        int columns = maxCols + idleCount;
+        Arrays.fill(u, 0, rows + 1, 0);
+        Arrays.fill(v, 0, columns + 1, 0);
+        Arrays.fill(p, 0, columns + 1, 0);
+        for (int row = 0; row < rows; row++) {
+            augment(row);
+        }
+        warm = true;
+
+        for (int row = 0; row < rows; row++) {
+            assignment[row] = assignmentOf(row);
+        }
+        return totalCost();
+    }
+
+    /**
+     * Drops a column from the current solution and moves the row that held it to its next best
+     * column, keeping the assignment optimal.
+     */
+    public void removeColumn(int col) {
+        if (!active[col]) {
+            return;
+        }
+        deactivateColumn(col);
+        if (!warm) {
+            return;
+        }
+        int row = p[col + 1] - 1;
+        p[col + 1] = 0;
+        if (row >= 0) {
+            rowMatch[row] = -1;
+            if (rows > activeCount + idleCount) {
+                addIdleColumn();
+            }
+            augment(row);
+        }
+    }
+
+    /**
+     * Brings a column of the current problem back into the solution, e.g. for a new coin in the
+     * slot of a removed one, and keeps the assignment optimal. Its costs must be set first.
+     * As many rows as possible stay assigned, so a row waiting on an idle column takes the new one
+     * if no other row does. A column past the current problem, but within the capacity, extends
+     * it; the columns in between stay inactive.
+     */
+    public void addColumn(int col) {
+        if (active[col]) {
+            return;
+        }
+        cols = Math.max(cols, col + 1);
+        active[col] = true;
+        activeCount++;
+        if (!warm) {
+            return;
+        }
+        // A free column at potential zero keeps the duals feasible for every row it is not cheaper for
+        v[col + 1] = 0;
+        p[col + 1] = 0;
+        for (int row = 0; row < rows; row++) {
+            if (cost[row * maxCols + col] - u[row + 1] < -EPSILON) {
+                updateRow(row);
+            }
+        }
+        if (idleCount > 0 && rows < activeCount + idleCount) {
+            removeIdleColumn();
+        }
+    }
+
+    /**
+     * Repairs the solution after the costs of one row were changed with {@link #setCost}.
+     */
+    public void updateRow(int row) {
+        if (!warm) {
+            return;
+        }
+        // Lower or raise the row potential to the smallest reduced cost, which keeps the duals feasible
+        int offset = row * maxCols;
+        double minimum = Double.MAX_VALUE;
+        for (int col = 0; col < cols; col++) {
+            if (active[col]) {
+                minimum = Math.min(minimum, cost[offset + col] - v[col + 1]);
+            }
+        }
+        for (int col = maxCols; col < maxCols + idleCount; col++) {
+            minimum = Math.min(minimum, -v[col + 1]);
+        }
+        u[row + 1] = minimum;
+
+        int matched = rowMatch[row];
+        if (matched != -1 && cost(offset, matched) - v[matched + 1] - minimum > EPSILON) {
+            // The matched edge is no longer tight: free it and find the row a new column
+            p[matched + 1] = 0;
+            rowMatch[row] = -1;
+            augment(row);
+        }
+    }
+
+    /**
+     * Changes one cost and keeps the assignment optimal, like {@link #setCost} followed by
+     * {@link #updateRow}. When the cost of the row's own column drops, e.g. for a bot walking to
+     * its coin, only the row potential follows it, so this takes constant time instead of a pass
+     * over every column.
+     */
+    public void updateCost(int row, int col, double value) {
+        int index = row * maxCols + col;
+        double drop = cost[index] - value;
+        cost[index] = value;
+        if (!warm) {
+            return;
+        }
+        if (rowMatch[row] == col && drop >= 0) {
+            // The matched edge was the row's smallest reduced cost and still is
+            u[row + 1] -= drop;
+        } else {
+            updateRow(row);
+        }
+    }
+
+    /**
+     * Upper bound on how much more the current assignment costs than the optimum. It is zero right
+     * after a cold solve and grows only when {@link #updateRow} frees a column with a negative potential.
+     */
+    public double gapBound() {
+        if (!warm) {
+            return 0;
+        }
+        double gap = 0;
+        for (int col = 0; col < cols; col++) {
+            if (active[col] && p[col + 1] == 0) {
+                gap -= v[col + 1];
+            }
+        }
+        for (int col = maxCols; col < maxCols + idleCount; col++) {
+            if (p[col + 1] == 0) {
+                gap -= v[col + 1];
+            }
+        }
+        return gap;
+    }
+
+    /**
+     * Raises the potential of every free column as far as the duals allow, at most to zero. This
+     * lowers the {@link #gapBound()} without changing the assignment, e.g. once the rows that
+     * made a freed column cheap have moved on.
+     */
+    public void tightenFreeColumns() {
+        if (!warm) {
+            return;
+        }
+        for (int col = 0; col < cols; col++) {
+            if (active[col]) {
+                tightenFreeColumn(col);
+            }
+        }
+        for (int col = maxCols; col < maxCols + idleCount; col++) {
+            tightenFreeColumn(col);
+        }
+    }
+
+    private void tightenFreeColumn(int col) {
+        if (p[col + 1] != 0 || v[col + 1] >= 0) {
+            return;
+        }
+        double potential = 0;
+        for (int row = 0; row < rows; row++) {
+            potential = Math.min(potential, cost(row * maxCols, col) - u[row + 1]);
+        }
+        v[col + 1] = potential;
+    }
+
+    /**
+     * Total cost of the current assignment.
+     */
+    public double totalCost() {
+        double total = 0;
+        for (int row = 0; row < rows; row++) {
+            if (rowMatch[row] != -1) {
+                total += cost(row * maxCols, rowMatch[row]);
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Cost of a real or idle column, given the offset of the row in the cost matrix.
+     */
+    private double cost(int rowOffset, int col) {
+        return col < maxCols ? cost[rowOffset + col] : 0;
+    }
+
+    /**
+     * Adds an idle column with a potential that keeps every reduced cost non-negative.
+     */
+    private void addIdleColumn() {
+        int j = maxCols + ++idleCount;
+        double potential = 0;
+        for (int i = 1; i <= rows; i++) {
+            potential = Math.min(potential, -u[i]);
+        }
+        v[j] = potential;
+        p[j] = 0;
+    }
+
+    /**
+     * Drops an idle column that is no longer needed to match every row. A free one goes if there
+     * is one; otherwise the row on the last idle column moves to a real column, since idle columns
+     * cost nothing and would keep it off the added column for good.
+     */
+    private void removeIdleColumn() {
+        int last = maxCols + idleCount;
+        int j = last;
+        for (int k = maxCols + 1; k < last; k++) {
+            if (p[k] == 0) {
+                j = k;
+                break;
+            }
+        }
+        int row = p[j] - 1;
+        // Idle columns are interchangeable, so the last one takes the place of the dropped one
+        v[j] = v[last];
+        p[j] = p[last];
+        if (p[j] != 0) {
+            rowMatch[p[j] - 1] = j - 1;
+        }
+        p[last] = 0;
+        idleCount--;
+        if (row >= 0) {
+            rowMatch[row] = -1;
+            augment(row);
+        }
+    }
+
+    /**
+     * Adds a free row to the matching along the shortest augmenting path in reduced costs.
+     */
+    private void augment(int row) {
+        int m = maxCols + idleCount;
+        p[0] = row + 1;
+        int j0 = 0;
+        Arrays.fill(minv, 0, m + 1, Double.MAX_VALUE);
+        Arrays.fill(used, 0, m + 1, false);
+        do {
+            used[j0] = true;
+            int i0 = p[j0];
+            double delta = Double.MAX_VALUE;
+            int j1 = 0;
+            int offset = (i0 - 1) * maxCols;
+            for (int j = 1; j <= m; j++) {
+                if (!used[j] && (j > maxCols || active[j - 1])) {
+                    double current = cost(offset, j - 1) - u[i0] - v[j];
+                    if (current < minv[j]) {
+                        minv[j] = current;
+                        way[j] = j0;
+                    }
+                    if (minv[j] < delta) {
+                        delta = minv[j];
+                        j1 = j;
+                    }
+                }
+            }
+            for (int j = 0; j <= m; j++) {
+                if (used[j]) {
+                    u[p[j]] += delta;
+                    v[j] -= delta;
+                } else {
+                    minv[j] -= delta;
+                }
+            }
+            j0 = j1;
+        } while (p[j0] != 0);
+
+        // Flip the matching along the augmenting path
+        do {
+            int j1 = way[j0];
+            p[j0] = p[j1];
+            j0 = j1;
+        } while (j0 != 0);
+
+        for (int j = 1; j <= m; j++) {
+            if (p[j] != 0) {
+                rowMatch[p[j] - 1] = j - 1;
+            }
+        }
+    }
+}
@@ -0,0 +1,11 @@
+/**
+ * Receives every improving solution an anytime search finds, so callers can act on the best
+ * plan so far while the search keeps running. Called from the search threads; implementations
+ * must be quick and must not modify the solution.
+ *
+ * @param <T> type of the solution, e.g. a route of coin indices.
+ */
+@FunctionalInterface
+public interface IncumbentListener<T> {
+    void improved(T solution, double cost);
+}
@@ -0,0 +1,119 @@
+import java.util.concurrent.atomic.LongAdder;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Period;
+import jdk.jfr.StackTrace;
+
+/**
+ * Metrics registry that exports to Java Flight Recorder. Every histogram sample becomes a
+ * {@code coins.MetricSample} event, and the counters are written once per second as a
+ * {@code coins.Counters} event. Nothing is written unless a recording is running, e.g. one started
+ * with {@code -XX:StartFlightRecording}.
+ */
+public class JfrMetrics implements MetricsRegistry, AutoCloseable {
+    private final LongAdder[] counters = new LongAdder[Metric.values().length];
+    private final long startNanos = System.nanoTime();
+    private final Runnable countersHook = this::emitCounters;
+
+    public JfrMetrics() {
+        for (Metric metric : Metric.values()) {
+            counters[metric.ordinal()] = new LongAdder();
+        }
+        FlightRecorder.addPeriodicEvent(CountersEvent.class, countersHook);
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return true;
+    }
+
+    @Override
+    public void count(Metric metric, long amount) {
+        counters[metric.ordinal()].add(amount);
+    }
+
+    @Override
+    public void record(Metric metric, long value) {
+        MetricSampleEvent event = new MetricSampleEvent();
+        if (event.shouldCommit()) {
+            event.metric = metric.name();
+            event.value = value;
+            event.unit = metric.unit;
+            event.commit();
+        }
+    }
+
+    private void emitCounters() {
+        CountersEvent event = new CountersEvent();
+        event.ticks = counters[Metric.TICKS.ordinal()].sum();
+        event.solverNodes = counters[Metric.SOLVER_NODES.ordinal()].sum();
+        event.solverPrunes = counters[Metric.SOLVER_PRUNES.ordinal()].sum();
+        event.reassignments = counters[Metric.REASSIGNMENTS.ordinal()].sum();
+        event.wallChecks = counters[Metric.WALL_CHECKS.ordinal()].sum();
+        event.coinsCollected = counters[Metric.COINS_COLLECTED.ordinal()].sum();
+        event.score = counters[Metric.SCORE.ordinal()].sum();
+        event.scorePerSecond = event.score * 1e9 / Math.max(1, System.nanoTime() - startNanos);
+        event.commit();
+    }
+
+    /**
+     * Stops writing the periodic counters event.
+     */
+    @Override
+    public void close() {
+        FlightRecorder.removePeriodicEvent(countersHook);
+    }
+
+    @Name("coins.MetricSample")
+    @Label("Metric Sample")
+    @Category("Coin Game")
+    @Description("One histogram sample, such as the duration of a tick or a solve")
+    @StackTrace(false)
+    static class MetricSampleEvent extends Event {
+        @Label("Metric")
+        String metric;
+
+        @Label("Value")
+        long value;
+
+        @Label("Unit")
+        String unit;
+    }
+
+    @Name("coins.Counters")
+    @Label("Engine Counters")
+    @Category("Coin Game")
+    @Description("Running totals of the engine counters")
+    @Period("1 s")
+    @StackTrace(false)
+    static class CountersEvent extends Event {
+        @Label("Ticks")
+        long ticks;
+
+        @Label("Solver Nodes")
+        long solverNodes;
+
+        @Label("Solver Prunes")
+        long solverPrunes;
+
+        @Label("Reassignments")
+        long reassignments;
+
+        @Label("Wall Checks")
+        long wallChecks;
+
+        @Label("Coins Collected")
+        long coinsCollected;
+
+        @Label("Score")
+        long score;
+
+        @Label("Score per Second")
+        double scorePerSecond;
+    }
+}
@@ -0,0 +1,82 @@
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-process metrics registry: a counter or histogram per {@link Metric}, read back with
+ * {@link #counter}, {@link #histogram} or a printable {@link #report}.
+ */
+public class LocalMetrics implements MetricsRegistry {
+    private final LongAdder[] counters = new LongAdder[Metric.values().length];
+    private final Histogram[] histograms = new Histogram[Metric.values().length];
+    private volatile long startNanos = System.nanoTime();
+
+    public LocalMetrics() {
+        for (Metric metric : Metric.values()) {
+            if (metric.histogram) {
+                histograms[metric.ordinal()] = new Histogram();
+            } else {
+                counters[metric.ordinal()] = new LongAdder();
+            }
+        }
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return true;
+    }
+
+    @Override
+    public void count(Metric metric, long amount) {
+        counters[metric.ordinal()].add(amount);
+    }
+
+    @Override
+    public void record(Metric metric, long value) {
+        histograms[metric.ordinal()].record(value);
+    }
+
+    public long counter(Metric metric) {
+        return counters[metric.ordinal()].sum();
+    }
+
+    public Histogram histogram(Metric metric) {
+        return histograms[metric.ordinal()];
+    }
+
+    /**
+     * Score collected per second of wall time since the registry was created or reset.
+     */
+    public double scorePerSecond() {
+        long elapsed = System.nanoTime() - startNanos;
+        return elapsed == 0 ? 0 : counter(Metric.SCORE) * 1e9 / elapsed;
+    }
+
+    public void reset() {
+        for (Metric metric : Metric.values()) {
+            if (metric.histogram) {
+                histograms[metric.ordinal()].reset();
+            } else {
+                counters[metric.ordinal()].reset();
+            }
+        }
+        startNanos = System.nanoTime();
+    }
+
+    /**
+     * One line per metric, histograms with count, mean, percentiles and maximum.
+     */
+    public String report() {
+        StringBuilder report = new StringBuilder();
+        for (Metric metric : Metric.values()) {
+            if (metric.histogram) {
+                Histogram histogram = histograms[metric.ordinal()];
+                report.append(String.format("%-16s count=%d mean=%.0f p50=%d p99=%d max=%d %s%n",
+                        metric, histogram.count(), histogram.mean(), histogram.percentile(0.5),
+                        histogram.percentile(0.99), histogram.max(), metric.unit));
+            } else {
+                report.append(String.format("%-16s %d %s%n", metric, counter(metric), metric.unit));
+            }
+        }
+        report.append(String.format("%-16s %.1f points/s%n", "SCORE_RATE", scorePerSecond()));
+        return report.toString();
+    }
+}
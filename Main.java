@@ -1,14 +1,57 @@
 import javax.swing.JFrame;
 import javax.swing.SwingUtilities;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Random;
 
+/**
+ * Opens the interactive game.
+ *
+ * Usage: java Main [--speed N] [--seed N] [--record FILE] [--crowd]
+ *
+ * With --speed the game runs N times faster than real time, e.g. 0.5 for slow motion.
+ * With --seed the layout of an earlier game, whose seed is printed at the start, is played again.
+ * With --record the game is written to an event log, see {@link GameRecorder}.
+ * With --crowd the bots keep apart instead of stacking, see {@link CrowdMover}.
+ */
 public class Main {
     public static void main(String[] args) {
+        double speed = 1;
+        long seed = new Random().nextLong();
+        Path recordFile = null;
+        boolean crowdAvoidance = false;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--speed": speed = Double.parseDouble(args[++i]); break;
+                case "--seed": seed = Long.parseLong(args[++i]); break;
+                case "--record": recordFile = Paths.get(args[++i]); break;
+                case "--crowd": crowdAvoidance = true; break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+        double gameSpeed = speed;
+        long gameSeed = seed;
+        Path gameRecordFile = recordFile;
+        boolean gameCrowdAvoidance = crowdAvoidance;
+
         SwingUtilities.invokeLater(() -> {
             JFrame frame = new JFrame("Bot Coin Collector");
             frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
             frame.setSize(800, 600);
 
-            GamePanel gamePanel = new GamePanel(800, 600);
+            GamePanel gamePanel = new GamePanel(800, 600, gameSeed);
+            gamePanel.setSpeed(gameSpeed);
+            gamePanel.setCrowdAvoidance(gameCrowdAvoidance);
+            if (gameRecordFile != null) {
+                try {
+                    gamePanel.record(gameRecordFile);
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Cannot record to " + gameRecordFile, e);
+                }
+            }
             frame.add(gamePanel);
 
             frame.setVisible(true);
@@ -16,4 +59,4 @@ public class Main {
             gamePanel.startSimulation();
         });
     }
-}
\ No newline at end of file
+}
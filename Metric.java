@@ -0,0 +1,24 @@
+/**
+ * What the engine and its solvers report to a {@link MetricsRegistry}. Counters are summed,
+ * histograms collect one sample per measurement.
+ */
+public enum Metric {
+    TICKS(false, "ticks"),
+    TICK_NANOS(true, "ns"),           // Time of one engine step, a single tick or an event jump
+    ASSIGNMENT_NANOS(true, "ns"),     // Time of one full Hungarian assignment solve
+    SOLVE_NANOS(true, "ns"),          // Time of one route or fleet search
+    SOLVER_NODES(false, "nodes"),     // Nodes expanded, or moves evaluated by local search
+    SOLVER_PRUNES(false, "branches"), // Branches cut by the bound, or rejected moves
+    REASSIGNMENTS(false, "targets"),  // Times a bot was pointed at a new coin
+    WALL_CHECKS(false, "checks"),     // Segments tested against the wall index
+    COINS_COLLECTED(false, "coins"),
+    SCORE(false, "points");
+
+    final boolean histogram;
+    final String unit;
+
+    Metric(boolean histogram, String unit) {
+        this.histogram = histogram;
+        this.unit = unit;
+    }
+}
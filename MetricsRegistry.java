@@ -0,0 +1,46 @@
+/**
+ * Receives the engine's counters and histogram samples. The engine only measures while its
+ * registry is enabled, so the {@link #DISABLED} default costs one field check per tick.
+ * Implementations must be thread-safe: route searches report from fork-join workers and a
+ * farm shares one registry between all its games.
+ */
+public interface MetricsRegistry {
+    /**
+     * Registry that drops everything, used when nobody asked for metrics.
+     */
+    MetricsRegistry DISABLED = new MetricsRegistry() {
+        @Override
+        public boolean isEnabled() {
+            return false;
+        }
+
+        @Override
+        public void count(Metric metric, long amount) {
+        }
+
+        @Override
+        public void record(Metric metric, long value) {
+        }
+    };
+
+    boolean isEnabled();
+
+    /**
+     * Adds to a counter.
+     */
+    void count(Metric metric, long amount);
+
+    /**
+     * Adds one sample to a histogram.
+     */
+    void record(Metric metric, long value);
+
+    /**
+     * Reports the work of a finished route or fleet search.
+     */
+    default void recordSolve(SolverStats stats) {
+        count(Metric.SOLVER_NODES, stats.nodes);
+        count(Metric.SOLVER_PRUNES, stats.prunes);
+        record(Metric.SOLVE_NANOS, stats.elapsedNanos);
+    }
+}
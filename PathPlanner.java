@@ -0,0 +1,258 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Wall-aware distances and waypoints for bots, based on a visibility graph over the wall endpoints.
+ *
+ * Bots move one pixel on both axes per tick, so from A to B they walk diagonally until one axis
+ * lines up and then straight along the other. A leg is therefore "clear" when both parts of that
+ * staircase are free of walls, which guarantees every single step along it is free too.
+ * The graph is built once per wall layout; shortest distances from every node to a coin are computed
+ * with Dijkstra the first time the coin is queried behind a wall and cached afterwards, until
+ * another coin takes its place.
+ */
+public class PathPlanner {
+    // Distance reported for coins that cannot be reached at all
+    static final double UNREACHABLE = 1e9;
+
+    // How far graph nodes sit diagonally outside each wall endpoint
+    private static final int CLEARANCE = 4;
+
+    private final WallIndex wallIndex;
+    // Coin positions are read from the world, whose arrays are replaced when coins are added
+    private final WorldState world;
+
+    // Coordinates of the graph nodes
+    private final int[] nodeX, nodeY;
+    private final int nodeCount;
+
+    // Directed leg costs between nodes, edge[from * nodeCount + to], infinite if the leg is blocked
+    private final double[] edge;
+
+    // Cached distance from every node to a coin, built lazily per coin
+    private double[][] coinDistances;
+
+    // Nodes visible from the last queried point, reused by consecutive queries from the same point
+    private int[] visibleNodes;
+    private int visibleCount;
+    private int visibleFromX = Integer.MIN_VALUE, visibleFromY = Integer.MIN_VALUE;
+
+    // Segments tested against the wall index so far, read by the engine's metrics
+    private long wallChecks;
+
+    public PathPlanner(WallIndex wallIndex, List<Wall> walls, WorldState world) {
+        this.wallIndex = wallIndex;
+        this.world = world;
+        coinDistances = new double[world.coinCount()][];
+
+        // Candidate nodes just outside each wall corner, dropping duplicates and nodes on other walls
+        List<int[]> nodes = new ArrayList<>();
+        for (Wall wall : walls) {
+            addCornerNodes(nodes, wall.startX, wall.startY);
+            addCornerNodes(nodes, wall.endX, wall.endY);
+        }
+        nodeCount = nodes.size();
+        nodeX = new int[nodeCount];
+        nodeY = new int[nodeCount];
+        for (int i = 0; i < nodeCount; i++) {
+            nodeX[i] = nodes.get(i)[0];
+            nodeY[i] = nodes.get(i)[1];
+        }
+
+        edge = new double[nodeCount * nodeCount];
+        for (int from = 0; from < nodeCount; from++) {
+            for (int to = 0; to < nodeCount; to++) {
+                edge[from * nodeCount + to] = from != to && clear(nodeX[from], nodeY[from], nodeX[to], nodeY[to])
+                        ? DistanceCalculator.calculateDistance(nodeX[from], nodeY[from], nodeX[to], nodeY[to])
+                        : Double.POSITIVE_INFINITY;
+            }
+        }
+        visibleNodes = new int[nodeCount];
+    }
+
+    WallIndex wallIndex() {
+        return wallIndex;
+    }
+
+    public boolean hasWalls() {
+        return !wallIndex.isEmpty();
+    }
+
+    /**
+     * Number of segments tested against the walls since the planner was created. Layouts without
+     * walls test nothing, so their checks are not counted.
+     */
+    public long wallChecks() {
+        return wallChecks;
+    }
+
+    /**
+     * Checks whether a single bot step is free of walls.
+     */
+    public boolean canStep(int x, int y, int newX, int newY) {
+        if (!wallIndex.isEmpty()) {
+            wallChecks++;
+        }
+        return !wallIndex.blocked(x, y, newX, newY);
+    }
+
+    /**
+     * Checks whether a bot can walk from one point to another without hitting a wall.
+     */
+    public boolean clear(int fromX, int fromY, int toX, int toY) {
+        if (!wallIndex.isEmpty()) {
+            wallChecks += 2;
+        }
+        return clear(wallIndex, fromX, fromY, toX, toY);
+    }
+
+    /**
+     * Same as {@link #clear(int, int, int, int)} for any wall index, without a planner.
+     */
+    static boolean clear(WallIndex wallIndex, int fromX, int fromY, int toX, int toY) {
+        int diagonal = Math.min(Math.abs(toX - fromX), Math.abs(toY - fromY));
+        int cornerX = fromX + Integer.signum(toX - fromX) * diagonal;
+        int cornerY = fromY + Integer.signum(toY - fromY) * diagonal;
+        return !wallIndex.blocked(fromX, fromY, cornerX, cornerY) && !wallIndex.blocked(cornerX, cornerY, toX, toY);
+    }
+
+    /**
+     * Drops what is cached about a coin, because a new coin was put into its slot.
+     */
+    public void coinChanged(int coinIndex) {
+        if (coinIndex < coinDistances.length) {
+            coinDistances[coinIndex] = null;
+        }
+    }
+
+    /**
+     * Shortest wall-aware distance from a point to a coin.
+     */
+    public double distance(int x, int y, int coinIndex) {
+        int coinX = world.coinX[coinIndex], coinY = world.coinY[coinIndex];
+        if (clear(x, y, coinX, coinY)) {
+            return DistanceCalculator.calculateDistance(x, y, coinX, coinY);
+        }
+        int node = bestNode(x, y, coinIndex);
+        return node == -1 ? UNREACHABLE
+                : DistanceCalculator.calculateDistance(x, y, nodeX[node], nodeY[node]) + distancesTo(coinIndex)[node];
+    }
+
+    /**
+     * The graph node a bot at (x, y) should walk to next on its way to a coin.
+     *
+     * @return node index, or -1 if the bot can walk straight to the coin (or no route exists).
+     */
+    public int nextWaypoint(int x, int y, int coinIndex) {
+        if (clear(x, y, world.coinX[coinIndex], world.coinY[coinIndex])) {
+            return -1;
+        }
+        return bestNode(x, y, coinIndex);
+    }
+
+    public int nodeX(int node) {
+        return nodeX[node];
+    }
+
+    public int nodeY(int node) {
+        return nodeY[node];
+    }
+
+    /**
+     * Visible node with the smallest distance from the point plus distance on to the coin.
+     */
+    private int bestNode(int x, int y, int coinIndex) {
+        double[] toCoin = distancesTo(coinIndex);
+        updateVisibleNodes(x, y);
+        int best = -1;
+        double bestDistance = Double.POSITIVE_INFINITY;
+        for (int k = 0; k < visibleCount; k++) {
+            int node = visibleNodes[k];
+            double distance = DistanceCalculator.calculateDistance(x, y, nodeX[node], nodeY[node]) + toCoin[node];
+            if (distance < bestDistance) {
+                bestDistance = distance;
+                best = node;
+            }
+        }
+        return best;
+    }
+
+    private void updateVisibleNodes(int x, int y) {
+        if (x == visibleFromX && y == visibleFromY) {
+            return;
+        }
+        visibleCount = 0;
+        for (int node = 0; node < nodeCount; node++) {
+            // A node the point sits on is not a step forward, its successors are visible anyway
+            boolean here = nodeX[node] == x && nodeY[node] == y;
+            if (!here && clear(x, y, nodeX[node], nodeY[node])) {
+                visibleNodes[visibleCount++] = node;
+            }
+        }
+        visibleFromX = x;
+        visibleFromY = y;
+    }
+
+    /**
+     * Dijkstra from the coin backwards over the directed legs, O(nodes^2) on the dense edge matrix.
+     */
+    private double[] distancesTo(int coinIndex) {
+        if (coinIndex >= coinDistances.length) {
+            coinDistances = Arrays.copyOf(coinDistances, Math.max(coinIndex + 1, coinDistances.length * 2));
+        }
+        double[] distances = coinDistances[coinIndex];
+        if (distances != null) {
+            return distances;
+        }
+        int x = world.coinX[coinIndex], y = world.coinY[coinIndex];
+        distances = new double[nodeCount];
+        boolean[] done = new boolean[nodeCount];
+        for (int node = 0; node < nodeCount; node++) {
+            distances[node] = clear(nodeX[node], nodeY[node], x, y)
+                    ? DistanceCalculator.calculateDistance(nodeX[node], nodeY[node], x, y)
+                    : Double.POSITIVE_INFINITY;
+        }
+        for (int round = 0; round < nodeCount; round++) {
+            int next = -1;
+            for (int node = 0; node < nodeCount; node++) {
+                if (!done[node] && (next == -1 || distances[node] < distances[next])) {
+                    next = node;
+                }
+            }
+            if (distances[next] == Double.POSITIVE_INFINITY) {
+                break;
+            }
+            done[next] = true;
+            for (int from = 0; from < nodeCount; from++) {
+                double candidate = edge[from * nodeCount + next] + distances[next];
+                if (candidate < distances[from]) {
+                    distances[from] = candidate;
+                }
+            }
+        }
+        coinDistances[coinIndex] = distances;
+        return distances;
+    }
+
+    private void addCornerNodes(List<int[]> nodes, int x, int y) {
+        for (int dx = -CLEARANCE; dx <= CLEARANCE; dx += 2 * CLEARANCE) {
+            for (int dy = -CLEARANCE; dy <= CLEARANCE; dy += 2 * CLEARANCE) {
+                int[] node = {x + dx, y + dy};
+                if (wallIndex.near(node[0], node[1], 1)) {
+                    continue;
+                }
+                boolean duplicate = false;
+                for (int[] existing : nodes) {
+                    if (Arrays.equals(existing, node)) {
+                        duplicate = true;
+                        break;
+                    }
+                }
+                if (!duplicate) {
+                    nodes.add(node);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,512 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Finds the shortest route that starts at a bot and visits every coin exactly once.
+ * Distances are passed in as flat arrays so the search never touches Bot or Coin objects.
+ *
+ * The searches are anytime: given a {@link SearchControl} they stop at its limits or when it is
+ * cancelled and return the best route found so far, and every better route is published to an
+ * {@link IncumbentListener} as soon as it is found.
+ */
+public class RouteSolver {
+    // Largest coin count Held-Karp is picked for. Its run time is bounded but grows as 2^n * n^2,
+    // past this point branch and bound on euclidean layouts is usually much faster
+    static final int HELD_KARP_MAX_COINS = 16;
+
+    // Bytes per Held-Karp table entry: one double for the cost and one short for the parent
+    private static final int HELD_KARP_BYTES_PER_ENTRY = 10;
+
+    // From this coin count on, the parallel search splits the first two levels instead of one
+    private static final int PARALLEL_TWO_LEVEL_COINS = 12;
+
+    // Search nodes, or Held-Karp subsets, between two reports to the search control
+    private static final int REPORT_INTERVAL = 1024;
+
+    // Distance from the bot's start position to each coin
+    private final double[] startDistances;
+
+    // Coin to coin distances, row-major: coinDistances[from * coinCount + to]
+    private final double[] coinDistances;
+
+    // Number of coins the route has to visit
+    private final int coinCount;
+
+    // Statistics of the last solve that was given a search control
+    private volatile SolverStats stats;
+
+    /**
+     * Creates a solver for one bot.
+     *
+     * @param startDistances distance from the bot to every coin.
+     * @param coinDistances  flat coin to coin distance matrix.
+     */
+    public RouteSolver(double[] startDistances, double[] coinDistances) {
+        this.startDistances = startDistances;
+        this.coinDistances = coinDistances;
+        this.coinCount = startDistances.length;
+    }
+
+    /**
+     * Solves the route exactly, using the Held-Karp dynamic program when its tables fit in the
+     * available heap and branch and bound otherwise.
+     *
+     * @return coin indices in visiting order.
+     */
+    public int[] solve() {
+        if (heldKarpFits(coinCount)) {
+            return heldKarp();
+        }
+        return branchAndBound();
+    }
+
+    /**
+     * Checks whether the Held-Karp tables for the given coin count can be allocated without
+     * using more than half of the heap that is still free.
+     */
+    static boolean heldKarpFits(int coinCount) {
+        if (coinCount > HELD_KARP_MAX_COINS) {
+            return false;
+        }
+        Runtime runtime = Runtime.getRuntime();
+        long freeHeap = runtime.maxMemory() - (runtime.totalMemory() - runtime.freeMemory());
+        long tableBytes = (1L << coinCount) * coinCount * HELD_KARP_BYTES_PER_ENTRY;
+        return tableBytes <= freeHeap / 2;
+    }
+
+    /**
+     * Solves the route exactly with the O(2^n * n^2) Held-Karp dynamic program. The tables are
+     * indexed by a bitmask of visited coins and the coin the partial route ends at.
+     *
+     * @return coin indices in visiting order.
+     */
+    public int[] heldKarp() {
+        return heldKarp(SearchControl.unlimited(), new LongAdder());
+    }
+
+    /**
+     * Held-Karp that checks the control every few thousand subsets.
+     *
+     * @param nodes receives the number of subsets processed.
+     * @return coin indices in visiting order, or null if the control stopped the search.
+     */
+    private int[] heldKarp(SearchControl control, LongAdder nodes) {
+        int[] route = new int[coinCount];
+        if (coinCount == 0) {
+            return route;
+        }
+
+        int full = 1 << coinCount;
+        // cost[mask * coinCount + j]: shortest route from the bot through the coins in mask, ending at j
+        double[] cost = new double[full * coinCount];
+        // parent[mask * coinCount + j]: coin visited right before j on that route, -1 for the bot
+        short[] parent = new short[full * coinCount];
+        Arrays.fill(cost, Double.MAX_VALUE);
+
+        for (int j = 0; j < coinCount; j++) {
+            cost[(1 << j) * coinCount + j] = startDistances[j];
+            parent[(1 << j) * coinCount + j] = -1;
+        }
+
+        for (int mask = 1; mask < full; mask++) {
+            if ((mask & (REPORT_INTERVAL - 1)) == 0) {
+                nodes.add(REPORT_INTERVAL);
+                if (control.report(REPORT_INTERVAL)) {
+                    return null;
+                }
+            }
+            int row = mask * coinCount;
+            for (int j = 0; j < coinCount; j++) {
+                double current = cost[row + j];
+                if ((mask & (1 << j)) == 0 || current == Double.MAX_VALUE) {
+                    continue;
+                }
+                int distanceRow = j * coinCount;
+                for (int k = 0; k < coinCount; k++) {
+                    if ((mask & (1 << k)) != 0) {
+                        continue;
+                    }
+                    int next = (mask | (1 << k)) * coinCount + k;
+                    double candidate = current + coinDistances[distanceRow + k];
+                    if (candidate < cost[next]) {
+                        cost[next] = candidate;
+                        parent[next] = (short) j;
+                    }
+                }
+            }
+        }
+
+        long rest = (full - 1) & (REPORT_INTERVAL - 1);
+        nodes.add(rest);
+        control.report(rest);
+
+        // Pick the cheapest end coin and walk the parents back to the bot
+        int mask = full - 1;
+        int last = 0;
+        for (int j = 1; j < coinCount; j++) {
+            if (cost[mask * coinCount + j] < cost[mask * coinCount + last]) {
+                last = j;
+            }
+        }
+        for (int depth = coinCount - 1; depth >= 0; depth--) {
+            route[depth] = last;
+            int previous = parent[mask * coinCount + last];
+            mask &= ~(1 << last);
+            last = previous;
+        }
+        return route;
+    }
+
+    /**
+     * Solves the route exactly with branch and bound. The search starts from a nearest neighbour
+     * route and cuts every branch whose distance plus a minimum spanning tree bound over the
+     * unvisited coins cannot beat the best route found so far.
+     *
+     * @return coin indices in visiting order.
+     */
+    public int[] branchAndBound() {
+        // The greedy route is the first incumbent, so pruning is effective from the very first branch
+        Incumbent incumbent = new Incumbent(greedyRoute(), SearchControl.unlimited(), (route, length) -> { });
+        new Search(incumbent).run(new int[0]);
+        return incumbent.path;
+    }
+
+    /**
+     * Same as {@link #solve()}, but runs branch and bound on the given pool. The first one or two
+     * levels of the search tree become separate tasks that share the incumbent, so a route found
+     * by one task immediately tightens pruning in all others.
+     *
+     * @param pool pool to run the search subtrees on.
+     * @return coin indices in visiting order.
+     */
+    public int[] solve(ForkJoinPool pool) {
+        return solve(pool, SearchControl.unlimited(), (route, length) -> { });
+    }
+
+    /**
+     * Anytime version of {@link #solve(ForkJoinPool)}. The greedy route is published first, then
+     * every shorter route the search finds. Once the control stops the search, the best route so
+     * far is returned; {@link #getStats()} tells how far it can be from the optimum.
+     *
+     * @param pool     pool to run the search subtrees on.
+     * @param control  limits and cancellation of the search.
+     * @param listener receives a copy of every improving route and its length.
+     * @return coin indices in visiting order.
+     */
+    public int[] solve(ForkJoinPool pool, SearchControl control, IncumbentListener<int[]> listener) {
+        long start = System.nanoTime();
+        Incumbent incumbent = new Incumbent(greedyRoute(), control, listener);
+        listener.improved(incumbent.path.clone(), incumbent.minDistance());
+
+        if (heldKarpFits(coinCount)) {
+            int[] route = heldKarp(control, incumbent.nodes);
+            if (route != null) {
+                incumbent.offer(route, routeLength(route));
+            } else {
+                incumbent.stopped = true;
+            }
+        } else {
+            int splitDepth = coinCount >= PARALLEL_TWO_LEVEL_COINS ? 2 : 1;
+            SubtreeTask root = new SubtreeTask(incumbent, new int[0], Math.min(splitDepth, coinCount));
+            if (ForkJoinTask.inForkJoinPool()) {
+                root.invoke();
+            } else {
+                pool.invoke(root);
+            }
+        }
+
+        double best = incumbent.minDistance();
+        double bound = incumbent.stopped ? new Search(incumbent).lowerBound(-1) : best;
+        stats = new SolverStats(incumbent.nodes.sum(), incumbent.prunes.sum(), System.nanoTime() - start,
+                best, bound, !incumbent.stopped);
+        return incumbent.path;
+    }
+
+    /**
+     * Statistics of the last {@link #solve(ForkJoinPool, SearchControl, IncumbentListener)}, or null.
+     * The lower bound of a search that was stopped early is the minimum spanning tree over the
+     * bot and all coins.
+     */
+    public SolverStats getStats() {
+        return stats;
+    }
+
+    /**
+     * Builds a route by always walking to the nearest unvisited coin.
+     */
+    int[] greedyRoute() {
+        int[] route = new int[coinCount];
+        boolean[] used = new boolean[coinCount];
+        int last = -1;
+        for (int depth = 0; depth < coinCount; depth++) {
+            int next = -1;
+            double best = Double.MAX_VALUE;
+            for (int i = 0; i < coinCount; i++) {
+                if (!used[i] && distance(last, i) < best) {
+                    best = distance(last, i);
+                    next = i;
+                }
+            }
+            used[next] = true;
+            route[depth] = next;
+            last = next;
+        }
+        return route;
+    }
+
+    /**
+     * Total length of a route starting at the bot.
+     */
+    double routeLength(int[] route) {
+        double length = 0;
+        int last = -1;
+        for (int coin : route) {
+            length += distance(last, coin);
+            last = coin;
+        }
+        return length;
+    }
+
+    /**
+     * Best complete route found so far, shared by every search running on the same problem.
+     * The bound is read without locking on every node, updates are rare and synchronized.
+     * It also carries the control, listener and work counters of the solve.
+     */
+    private class Incumbent {
+        private final AtomicLong minDistanceBits;
+        private final int[] path;
+        private final SearchControl control;
+        private final IncumbentListener<int[]> listener;
+        private final LongAdder nodes = new LongAdder();
+        private final LongAdder prunes = new LongAdder();
+
+        // Set when a search gave up before exploring its whole subtree
+        private volatile boolean stopped;
+
+        Incumbent(int[] initialPath, SearchControl control, IncumbentListener<int[]> listener) {
+            path = initialPath;
+            minDistanceBits = new AtomicLong(Double.doubleToLongBits(routeLength(initialPath)));
+            this.control = control;
+            this.listener = listener;
+        }
+
+        double minDistance() {
+            return Double.longBitsToDouble(minDistanceBits.get());
+        }
+
+        synchronized void offer(int[] candidatePath, double distance) {
+            if (distance < minDistance()) {
+                System.arraycopy(candidatePath, 0, path, 0, coinCount);
+                minDistanceBits.set(Double.doubleToLongBits(distance));
+                listener.improved(path.clone(), distance);
+            }
+        }
+    }
+
+    /**
+     * Forks one task per child of a search node until the split depth is reached, then runs the
+     * rest of the subtree sequentially.
+     */
+    private class SubtreeTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Incumbent incumbent;
+        private final int[] prefix;
+        private final int splitDepth;
+
+        SubtreeTask(Incumbent incumbent, int[] prefix, int splitDepth) {
+            this.incumbent = incumbent;
+            this.prefix = prefix;
+            this.splitDepth = splitDepth;
+        }
+
+        @Override
+        protected void compute() {
+            if (incumbent.control.isStopped()) {
+                incumbent.stopped = true;
+                return;
+            }
+            if (prefix.length >= splitDepth) {
+                new Search(incumbent).run(prefix);
+                return;
+            }
+
+            boolean[] used = new boolean[coinCount];
+            for (int coin : prefix) {
+                used[coin] = true;
+            }
+            List<SubtreeTask> children = new ArrayList<>();
+            for (int i = 0; i < coinCount; i++) {
+                if (!used[i]) {
+                    int[] childPrefix = Arrays.copyOf(prefix, prefix.length + 1);
+                    childPrefix[prefix.length] = i;
+                    children.add(new SubtreeTask(incumbent, childPrefix, splitDepth));
+                }
+            }
+            invokeAll(children);
+        }
+    }
+
+    /**
+     * Sequential depth-first search with its own scratch arrays, so several searches can run on
+     * different subtrees of the same problem at once.
+     */
+    private class Search {
+        private final Incumbent incumbent;
+
+        // Flags for the coins already on the current partial route
+        private final boolean[] visited = new boolean[coinCount];
+
+        // Coin indices of the current partial route
+        private final int[] currentPath = new int[coinCount];
+
+        // Candidate coins for every depth, sorted nearest first (depth * coinCount + k)
+        private final int[] candidates = new int[coinCount * coinCount];
+
+        // Scratch arrays for the minimum spanning tree lower bound
+        private final double[] primKey = new double[coinCount + 1];
+        private final int[] primNodes = new int[coinCount + 1];
+
+        // Work not yet reported to the incumbent, and whether the control stopped this search
+        private long nodes, prunes;
+        private boolean stopped;
+
+        Search(Incumbent incumbent) {
+            this.incumbent = incumbent;
+        }
+
+        /**
+         * Searches every route that starts with the given coins.
+         */
+        void run(int[] prefix) {
+            int last = -1;
+            double currentDistance = 0;
+            for (int depth = 0; depth < prefix.length; depth++) {
+                currentDistance += distance(last, prefix[depth]);
+                last = prefix[depth];
+                visited[last] = true;
+                currentPath[depth] = last;
+            }
+            search(prefix.length, last, currentDistance);
+            flush();
+        }
+
+        /**
+         * Hands the counted work to the incumbent.
+         *
+         * @return true if the control wants the search to stop.
+         */
+        private boolean flush() {
+            incumbent.nodes.add(nodes);
+            incumbent.prunes.add(prunes);
+            boolean stop = incumbent.control.report(nodes);
+            nodes = 0;
+            prunes = 0;
+            return stop;
+        }
+
+        private void search(int depth, int last, double currentDistance) {
+            if (stopped) {
+                return;
+            }
+            if (++nodes == REPORT_INTERVAL && flush()) {
+                stopped = true;
+                incumbent.stopped = true;
+                return;
+            }
+            if (depth == coinCount) {
+                if (currentDistance < incumbent.minDistance()) {
+                    incumbent.offer(currentPath, currentDistance);
+                }
+                return;
+            }
+
+            // Cut the branch if even the cheapest completion cannot improve the best route
+            if (currentDistance + lowerBound(last) >= incumbent.minDistance()) {
+                prunes++;
+                return;
+            }
+
+            // Visit the nearest coins first so good routes are found early
+            int offset = depth * coinCount;
+            int count = 0;
+            for (int i = 0; i < coinCount; i++) {
+                if (!visited[i]) {
+                    double d = distance(last, i);
+                    int k = count++;
+                    while (k > 0 && distance(last, candidates[offset + k - 1]) > d) {
+                        candidates[offset + k] = candidates[offset + k - 1];
+                        k--;
+                    }
+                    candidates[offset + k] = i;
+                }
+            }
+
+            for (int k = 0; k < count; k++) {
+                int i = candidates[offset + k];
+                double nextDistance = currentDistance + distance(last, i);
+                if (nextDistance >= incumbent.minDistance()) {
+                    prunes++;
+                    continue;
+                }
+                visited[i] = true;
+                currentPath[depth] = i;
+                search(depth + 1, i, nextDistance);
+                visited[i] = false; // Backtrack
+            }
+        }
+
+        /**
+         * Weight of the minimum spanning tree over the last visited node and all unvisited coins.
+         * Any route that finishes the tour is a spanning tree of those nodes, so the bound never
+         * overestimates the remaining distance.
+         */
+        private double lowerBound(int last) {
+            int size = 0;
+            primNodes[size++] = last;
+            for (int i = 0; i < coinCount; i++) {
+                if (!visited[i]) {
+                    primNodes[size++] = i;
+                }
+            }
+
+            // Prim's algorithm, O(size^2) on the dense distance matrix
+            for (int k = 1; k < size; k++) {
+                primKey[k] = distance(last, primNodes[k]);
+            }
+            double total = 0;
+            for (int added = 1; added < size; added++) {
+                int best = -1;
+                for (int k = 1; k < size; k++) {
+                    if (primKey[k] >= 0 && (best == -1 || primKey[k] < primKey[best])) {
+                        best = k;
+                    }
+                }
+                total += primKey[best];
+                primKey[best] = -1; // Mark as part of the tree
+                for (int k = 1; k < size; k++) {
+                    if (primKey[k] >= 0) {
+                        double d = distance(primNodes[best], primNodes[k]);
+                        if (d < primKey[k]) {
+                            primKey[k] = d;
+                        }
+                    }
+                }
+            }
+            return total;
+        }
+    }
+
+    /**
+     * Distance between two route nodes, where -1 stands for the bot's start position.
+     */
+    private double distance(int from, int to) {
+        return from < 0 ? startDistances[to] : coinDistances[from * coinCount + to];
+    }
+}
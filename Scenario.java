@@ -0,0 +1,75 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Start layout of a game: panel size, bot and coin positions, walls and the seed the layout was
+ * drawn from. Positions are kept in flat arrays so a scenario file can be read straight into them,
+ * see {@link ScenarioFile}.
+ */
+public class Scenario {
+    // Margins to ensure bots and coins don't spawn too close to the edge
+    private static final int BOT_MARGIN = 20;
+    private static final int COIN_MARGIN = 20;
+
+    // Minimum distance between a wall and a spawned bot or coin
+    static final int WALL_CLEARANCE = 6;
+
+    final int width, height;
+    final long seed;
+    final int[] botX, botY;
+    final int[] coinX, coinY;
+    final List<Wall> walls;
+
+    public Scenario(int width, int height, long seed, int[] botX, int[] botY, int[] coinX, int[] coinY, List<Wall> walls) {
+        if (botX.length != botY.length || coinX.length != coinY.length) {
+            throw new IllegalArgumentException("Every bot and coin needs both coordinates");
+        }
+        this.width = width;
+        this.height = height;
+        this.seed = seed;
+        this.botX = botX;
+        this.botY = botY;
+        this.coinX = coinX;
+        this.coinY = coinY;
+        this.walls = walls;
+    }
+
+    /**
+     * Draws a random layout: the same seed, sizes and walls always place the bots and coins at the
+     * same positions, away from the panel edges and the walls.
+     */
+    public static Scenario generate(int numberOfBots, int numberOfCoins, int width, int height, long seed, List<Wall> walls) {
+        SplittableRandom random = new SplittableRandom(seed);
+        WallIndex wallIndex = new WallIndex(walls);
+        int[] botX = new int[numberOfBots], botY = new int[numberOfBots];
+        int[] coinX = new int[numberOfCoins], coinY = new int[numberOfCoins];
+        for (int i = 0; i < numberOfBots; i++) {
+            int x, y;
+            do {
+                x = random.nextInt(width - 3 * BOT_MARGIN) + BOT_MARGIN;
+                y = random.nextInt(height - 3 * BOT_MARGIN) + BOT_MARGIN;
+            } while (wallIndex.near(x, y, WALL_CLEARANCE));
+            botX[i] = x;
+            botY[i] = y;
+        }
+        for (int i = 0; i < numberOfCoins; i++) {
+            int x, y;
+            do {
+                x = random.nextInt(width - 3 * COIN_MARGIN) + COIN_MARGIN;
+                y = random.nextInt(height - 3 * COIN_MARGIN) + COIN_MARGIN;
+            } while (wallIndex.near(x, y, WALL_CLEARANCE));
+            coinX[i] = x;
+            coinY[i] = y;
+        }
+        return new Scenario(width, height, seed, botX, botY, coinX, coinY, new ArrayList<>(walls));
+    }
+
+    public int botCount() {
+        return botX.length;
+    }
+
+    public int coinCount() {
+        return coinX.length;
+    }
+}
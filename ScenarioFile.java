@@ -0,0 +1,117 @@
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Binary scenario files. Everything is a little-endian 32-bit int:
+ *
+ * <pre>
+ * magic "COIN", version, width, height, seed low, seed high, bot count, coin count, wall count
+ * bot x[bot count], bot y[bot count], coin x[coin count], coin y[coin count]
+ * walls[wall count] as start x, start y, end x, end y
+ * </pre>
+ *
+ * The coordinate sections have the layout of the engine's arrays, so loading maps each section
+ * and copies it into its array in bulk, with no parsing per entity. Files are written with a
+ * {@link ScenarioWriter}.
+ */
+public class ScenarioFile {
+    // "COIN" in ASCII, read as a little-endian int
+    static final int MAGIC = 0x4E494F43;
+    static final int VERSION = 1;
+    static final int HEADER_INTS = 9;
+
+    private ScenarioFile() {
+    }
+
+    /**
+     * Loads a scenario written by {@link #write} or a {@link ScenarioWriter}.
+     *
+     * @throws IOException if the file cannot be read, is not a scenario file or is truncated.
+     */
+    public static Scenario read(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return read(channel, path, false);
+        }
+    }
+
+    /**
+     * Loads the scenario at the start of a file.
+     *
+     * @param trailingData whether more data may follow the scenario, as in a recording.
+     */
+    static Scenario read(FileChannel channel, Path path, boolean trailingData) throws IOException {
+        long size = channel.size();
+        if (size < HEADER_INTS * Integer.BYTES) {
+            throw new IOException("Not a scenario file: " + path);
+        }
+        int[] header = new int[HEADER_INTS];
+        ints(channel, 0, HEADER_INTS).get(header);
+        if (header[0] != MAGIC) {
+            throw new IOException("Not a scenario file: " + path);
+        }
+        if (header[1] != VERSION) {
+            throw new IOException("Unsupported scenario version " + header[1] + ": " + path);
+        }
+        int width = header[2], height = header[3];
+        long seed = (header[4] & 0xFFFFFFFFL) | (long) header[5] << 32;
+        int botCount = header[6], coinCount = header[7], wallCount = header[8];
+        if (botCount < 0 || coinCount < 0 || wallCount < 0
+                || (trailingData ? size < fileSize(botCount, coinCount, wallCount)
+                                 : size != fileSize(botCount, coinCount, wallCount))) {
+            throw new IOException("Truncated or corrupt scenario file: " + path);
+        }
+
+        long offset = HEADER_INTS;
+        int[] botX = new int[botCount], botY = new int[botCount];
+        int[] coinX = new int[coinCount], coinY = new int[coinCount];
+        int[] wallInts = new int[4 * wallCount];
+        for (int[] section : new int[][] {botX, botY, coinX, coinY, wallInts}) {
+            ints(channel, offset, section.length).get(section);
+            offset += section.length;
+        }
+
+        List<Wall> walls = new ArrayList<>(wallCount);
+        for (int i = 0; i < wallCount; i++) {
+            walls.add(new Wall(wallInts[4 * i], wallInts[4 * i + 1], wallInts[4 * i + 2], wallInts[4 * i + 3]));
+        }
+        return new Scenario(width, height, seed, botX, botY, coinX, coinY, walls);
+    }
+
+    /**
+     * Writes a scenario in one go.
+     */
+    public static void write(Path path, Scenario scenario) throws IOException {
+        try (ScenarioWriter writer = new ScenarioWriter(path, scenario.width, scenario.height, scenario.seed,
+                scenario.botCount(), scenario.coinCount(), scenario.walls.size())) {
+            for (int i = 0; i < scenario.botCount(); i++) {
+                writer.addBot(scenario.botX[i], scenario.botY[i]);
+            }
+            for (int i = 0; i < scenario.coinCount(); i++) {
+                writer.addCoin(scenario.coinX[i], scenario.coinY[i]);
+            }
+            for (Wall wall : scenario.walls) {
+                writer.addWall(wall);
+            }
+        }
+    }
+
+    static long fileSize(int botCount, int coinCount, int wallCount) {
+        return (HEADER_INTS + 2L * botCount + 2L * coinCount + 4L * wallCount) * Integer.BYTES;
+    }
+
+    /**
+     * Maps a run of ints of the file. Every section gets its own mapping, so files larger than
+     * 2 GB can be loaded as long as each array fits.
+     */
+    private static IntBuffer ints(FileChannel channel, long offsetInts, int count) throws IOException {
+        MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, offsetInts * Integer.BYTES, (long) count * Integer.BYTES);
+        return map.order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+    }
+}
@@ -0,0 +1,128 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes a scenario file one bot, coin and wall at a time, in the format of {@link ScenarioFile}.
+ * The counts are fixed up front, so every section's place in the file is known and each is
+ * written through its own small buffer; a scenario of any size is written without holding it
+ * in memory.
+ */
+public class ScenarioWriter implements Closeable {
+    // Ints buffered per section before they are written out
+    private static final int CHUNK_INTS = 8192;
+
+    private final FileChannel channel;
+    private final int botCount, coinCount, wallCount;
+    private final Section botX, botY, coinX, coinY, walls;
+    private int bots, coins, wallsWritten;
+
+    public ScenarioWriter(Path path, int width, int height, long seed, int botCount, int coinCount, int wallCount) throws IOException {
+        if (botCount < 0 || coinCount < 0 || wallCount < 0) {
+            throw new IllegalArgumentException("Counts must not be negative");
+        }
+        this.botCount = botCount;
+        this.coinCount = coinCount;
+        this.wallCount = wallCount;
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+
+        long offset = ScenarioFile.HEADER_INTS;
+        botX = new Section(offset);
+        botY = new Section(offset += botCount);
+        coinX = new Section(offset += botCount);
+        coinY = new Section(offset += coinCount);
+        walls = new Section(offset + coinCount);
+
+        Section header = new Section(0);
+        header.put(ScenarioFile.MAGIC);
+        header.put(ScenarioFile.VERSION);
+        header.put(width);
+        header.put(height);
+        header.put((int) seed);
+        header.put((int) (seed >>> 32));
+        header.put(botCount);
+        header.put(coinCount);
+        header.put(wallCount);
+        header.flush();
+    }
+
+    public void addBot(int x, int y) throws IOException {
+        if (bots == botCount) {
+            throw new IllegalStateException("All " + botCount + " bots were already written");
+        }
+        botX.put(x);
+        botY.put(y);
+        bots++;
+    }
+
+    public void addCoin(int x, int y) throws IOException {
+        if (coins == coinCount) {
+            throw new IllegalStateException("All " + coinCount + " coins were already written");
+        }
+        coinX.put(x);
+        coinY.put(y);
+        coins++;
+    }
+
+    public void addWall(Wall wall) throws IOException {
+        if (wallsWritten == wallCount) {
+            throw new IllegalStateException("All " + wallCount + " walls were already written");
+        }
+        walls.put(wall.startX);
+        walls.put(wall.startY);
+        walls.put(wall.endX);
+        walls.put(wall.endY);
+        wallsWritten++;
+    }
+
+    /**
+     * Writes out what is still buffered and closes the file.
+     *
+     * @throws IOException if fewer bots, coins or walls were added than announced.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            for (Section section : new Section[] {botX, botY, coinX, coinY, walls}) {
+                section.flush();
+            }
+        } finally {
+            channel.close();
+        }
+        if (bots != botCount || coins != coinCount || wallsWritten != wallCount) {
+            throw new IOException(String.format("Incomplete scenario: %d of %d bots, %d of %d coins, %d of %d walls",
+                    bots, botCount, coins, coinCount, wallsWritten, wallCount));
+        }
+    }
+
+    /**
+     * Buffered writer for one run of ints of the file.
+     */
+    private class Section {
+        private final ByteBuffer buffer = ByteBuffer.allocate(CHUNK_INTS * Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        private long position; // Byte offset of the next flush
+
+        Section(long offsetInts) {
+            position = offsetInts * Integer.BYTES;
+        }
+
+        void put(int value) throws IOException {
+            buffer.putInt(value);
+            if (!buffer.hasRemaining()) {
+                flush();
+            }
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+            buffer.clear();
+        }
+    }
+}
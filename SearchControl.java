@@ -0,0 +1,90 @@
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Time and node limits plus cooperative cancellation for an anytime search. The search reports
+ * its work every few thousand nodes, so the checks cost next to nothing per node; once a limit is
+ * hit or {@link #cancel()} is called, the search stops and returns the best solution found so far.
+ * One control may be shared by several searches, which then share its limits.
+ */
+public class SearchControl {
+    private final long startNanos = System.nanoTime();
+    private final long timeLimitNanos;
+    private final long nodeLimit;
+
+    // Nodes reported by all searches using this control
+    private final AtomicLong nodes = new AtomicLong();
+
+    private volatile boolean cancelled;
+    private volatile boolean stopped;
+
+    private SearchControl(long timeLimitNanos, long nodeLimit) {
+        this.timeLimitNanos = timeLimitNanos;
+        this.nodeLimit = nodeLimit;
+    }
+
+    /**
+     * A control without limits, which only stops when cancelled.
+     */
+    public static SearchControl unlimited() {
+        return new SearchControl(Long.MAX_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * A control that stops the search the given time after its creation.
+     */
+    public static SearchControl withTimeLimit(long nanos) {
+        return new SearchControl(nanos, Long.MAX_VALUE);
+    }
+
+    /**
+     * A control that stops the search after the given number of nodes.
+     */
+    public static SearchControl withNodeLimit(long nodeLimit) {
+        return new SearchControl(Long.MAX_VALUE, nodeLimit);
+    }
+
+    /**
+     * A control that stops the search at whichever limit is hit first.
+     */
+    public static SearchControl withLimits(long timeLimitNanos, long nodeLimit) {
+        return new SearchControl(timeLimitNanos, nodeLimit);
+    }
+
+    /**
+     * Asks every search using this control to stop as soon as possible. Safe to call from any thread.
+     */
+    public void cancel() {
+        cancelled = true;
+        stopped = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Whether the searches should stop, because of a limit or a cancellation.
+     */
+    public boolean isStopped() {
+        if (!stopped && System.nanoTime() - startNanos >= timeLimitNanos) {
+            stopped = true;
+        }
+        return stopped;
+    }
+
+    /**
+     * Adds the nodes a search expanded since its last report and checks the limits.
+     *
+     * @return true if the search should stop.
+     */
+    public boolean report(long newNodes) {
+        if (nodes.addAndGet(newNodes) >= nodeLimit) {
+            stopped = true;
+        }
+        return isStopped();
+    }
+
+    public long elapsedNanos() {
+        return System.nanoTime() - startNanos;
+    }
+}
@@ -0,0 +1,125 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.LongFunction;
+
+/**
+ * Runs many independent games in parallel. Every game gets its own GameEngine and its own seed,
+ * split from one root seed, so games share no mutable state and a farm run is reproducible.
+ */
+public class SimulationFarm {
+    private final ExecutorService executor;
+    private volatile MetricsRegistry metrics = MetricsRegistry.DISABLED;
+    private volatile boolean crowdAvoidance;
+
+    public SimulationFarm(ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * A farm backed by a fixed pool, usually one thread per core.
+     */
+    public static SimulationFarm fixedPool(int threads) {
+        return new SimulationFarm(Executors.newFixedThreadPool(threads));
+    }
+
+    /**
+     * A farm that starts one virtual thread per game. Virtual threads need Java 21, on older
+     * runtimes this falls back to a fixed pool with one thread per core.
+     */
+    public static SimulationFarm virtualThreads() {
+        try {
+            ExecutorService executor = (ExecutorService) Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            return new SimulationFarm(executor);
+        } catch (ReflectiveOperationException e) {
+            return fixedPool(Runtime.getRuntime().availableProcessors());
+        }
+    }
+
+    /**
+     * Registry every game of the following runs reports to. It is shared by all games at once.
+     */
+    public void setMetrics(MetricsRegistry metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Whether the bots of the following runs keep apart, see {@link GameEngine#setCrowdAvoidance}.
+     */
+    public void setCrowdAvoidance(boolean enabled) {
+        crowdAvoidance = enabled;
+    }
+
+    /**
+     * Plays the given number of games and waits for all of them. Results are handed to the
+     * listener and the returned statistics as soon as each game finishes.
+     *
+     * @param games       number of games to play.
+     * @param seed        root seed; the seed of every game is split from it.
+     * @param eventDriven jump from event to event instead of stepping every tick.
+     * @param mode        how the bots pick their coins.
+     * @param listener    called with every result, from the thread that played the game.
+     * @return statistics over all games.
+     */
+    public FarmStats run(int games, long seed, int numberOfBots, int numberOfCoins, int width, int height,
+                         List<Wall> walls, long maxTicks, boolean eventDriven, AssignmentMode mode,
+                         Consumer<GameResult> listener) {
+        return run(games, seed, gameSeed -> new GameEngine(numberOfBots, numberOfCoins, width, height, gameSeed, walls),
+                maxTicks, eventDriven, mode, listener);
+    }
+
+    /**
+     * Plays the same layout the given number of times, e.g. to compare the timings of a large
+     * scenario. Every game gets its own engine; they only share the scenario's coin positions,
+     * which no engine changes.
+     */
+    public FarmStats run(int games, Scenario scenario, long maxTicks, boolean eventDriven, AssignmentMode mode,
+                         Consumer<GameResult> listener) {
+        return run(games, scenario.seed, gameSeed -> new GameEngine(scenario), maxTicks, eventDriven, mode, listener);
+    }
+
+    private FarmStats run(int games, long seed, LongFunction<GameEngine> engines, long maxTicks, boolean eventDriven,
+                          AssignmentMode mode, Consumer<GameResult> listener) {
+        FarmStats stats = new FarmStats(games);
+        SplittableRandom root = new SplittableRandom(seed);
+        List<Future<?>> futures = new ArrayList<>(games);
+        MetricsRegistry gameMetrics = metrics;
+        boolean gameCrowdAvoidance = crowdAvoidance;
+        long start = System.nanoTime();
+
+        for (int game = 0; game < games; game++) {
+            long gameSeed = root.split().nextLong();
+            futures.add(executor.submit(() -> {
+                GameEngine engine = engines.apply(gameSeed);
+                engine.setMetrics(gameMetrics);
+                engine.setCrowdAvoidance(gameCrowdAvoidance);
+                GameResult result = HeadlessRunner.runGame(engine, gameSeed, maxTicks, eventDriven, mode);
+                stats.accept(result);
+                listener.accept(result);
+            }));
+        }
+
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for games", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("A game failed", e.getCause());
+        }
+        stats.finish(System.nanoTime() - start);
+        return stats;
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
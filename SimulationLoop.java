@@ -0,0 +1,137 @@
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs a game on its own thread at a fixed tick length, scaled by a speed multiplier, and
+ * publishes a {@link WorldSnapshot} after every batch of ticks. Only this thread touches the
+ * engine once the loop is started; other threads read snapshots with {@link #latest()} and send
+ * changes through {@link #submit}, so rendering never blocks ticks and ticks never wait for Swing.
+ */
+public class SimulationLoop {
+    // Most ticks run to catch up in one go, e.g. after the machine stalled; the rest is dropped
+    private static final int MAX_CATCH_UP_TICKS = 10_000;
+
+    private final GameEngine engine;
+    private final long tickNanos;
+    private final SnapshotBuffer snapshots = new SnapshotBuffer();
+
+    // Work handed in by other threads, run on the simulation thread before the next tick
+    private final ConcurrentLinkedQueue<Runnable> commands = new ConcurrentLinkedQueue<>();
+
+    // Called on the simulation thread once all coins are collected
+    private final Runnable onFinished;
+
+    private volatile double speed = 1;
+    private volatile boolean running;
+    private Thread thread;
+
+    /**
+     * @param engine     the game, which must not be used by other threads after {@link #start()}.
+     * @param tickNanos  length of a tick at speed 1.
+     * @param onFinished run on the simulation thread after the last coin is collected.
+     */
+    public SimulationLoop(GameEngine engine, long tickNanos, Runnable onFinished) {
+        this.engine = engine;
+        this.tickNanos = tickNanos;
+        this.onFinished = onFinished;
+        publish(); // Readers get the start layout before the first tick
+    }
+
+    public void start() {
+        running = true;
+        thread = new Thread(this::run, "simulation");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops the loop after the tick in progress.
+     */
+    public void stop() {
+        running = false;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    /**
+     * Sets how many times faster than real time the game runs; 0 pauses it.
+     */
+    public void setSpeed(double speed) {
+        if (speed < 0) {
+            throw new IllegalArgumentException("Speed must not be negative: " + speed);
+        }
+        this.speed = speed;
+        if (thread != null) {
+            LockSupport.unpark(thread); // Apply the new speed right away instead of after the current wait
+        }
+    }
+
+    public double getSpeed() {
+        return speed;
+    }
+
+    /**
+     * Runs a change to the engine on the simulation thread, before the next tick.
+     */
+    public void submit(Runnable command) {
+        commands.add(command);
+    }
+
+    /**
+     * The latest published snapshot. Meant for a single reader thread, e.g. the Swing thread.
+     */
+    public WorldSnapshot latest() {
+        return snapshots.latest();
+    }
+
+    private void run() {
+        long last = System.nanoTime();
+        double pendingNanos = 0; // Game time owed since the last tick
+        while (running) {
+            long now = System.nanoTime();
+            double currentSpeed = speed;
+            pendingNanos += (now - last) * currentSpeed;
+            last = now;
+
+            boolean changed = runCommands();
+            int ticks = 0;
+            while (pendingNanos >= tickNanos && ticks < MAX_CATCH_UP_TICKS && !engine.allCoinsCollected()) {
+                engine.updateBotPositions();
+                engine.updateCoinCollections();
+                pendingNanos -= tickNanos;
+                ticks++;
+            }
+            if (ticks == MAX_CATCH_UP_TICKS) {
+                pendingNanos = 0;
+            }
+            if (ticks > 0 || changed) {
+                publish();
+            }
+            if (engine.allCoinsCollected()) {
+                running = false;
+                onFinished.run();
+                return;
+            }
+
+            // Sleep until the next tick is due; a paused game checks back once per tick length
+            long waitNanos = currentSpeed > 0 ? (long) ((tickNanos - pendingNanos) / currentSpeed) : tickNanos;
+            LockSupport.parkNanos(Math.max(waitNanos, 0));
+        }
+    }
+
+    private boolean runCommands() {
+        boolean ran = false;
+        Runnable command;
+        while ((command = commands.poll()) != null) {
+            command.run();
+            ran = true;
+        }
+        return ran;
+    }
+
+    private void publish() {
+        engine.writeSnapshot(snapshots.back());
+        snapshots.publish();
+    }
+}
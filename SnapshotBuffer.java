@@ -0,0 +1,46 @@
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Lock-free triple buffer of world snapshots between one writer and one reader. The writer fills
+ * its back snapshot and publishes it; the reader picks up the latest published snapshot. Neither
+ * side ever waits for the other: a slow reader simply skips snapshots, and a writer that is
+ * faster than the reader overwrites the unread one.
+ */
+public class SnapshotBuffer {
+    // Set in the shared state when the middle snapshot was published and not read yet
+    private static final int FRESH = 4;
+    private static final int INDEX_MASK = 3;
+
+    private final WorldSnapshot[] snapshots = {new WorldSnapshot(), new WorldSnapshot(), new WorldSnapshot()};
+
+    // Index of the middle snapshot, the one exchanged between the two sides, plus the FRESH flag
+    private final AtomicInteger middle = new AtomicInteger(1);
+
+    // Owned by the writer and by the reader respectively
+    private int back = 2;
+    private int front = 0;
+
+    /**
+     * The snapshot the writer may fill. Writer side only.
+     */
+    public WorldSnapshot back() {
+        return snapshots[back];
+    }
+
+    /**
+     * Hands the filled back snapshot to the reader and takes another one to fill. Writer side only.
+     */
+    public void publish() {
+        back = middle.getAndSet(back | FRESH) & INDEX_MASK;
+    }
+
+    /**
+     * The latest published snapshot, which stays unchanged until the next call. Reader side only.
+     */
+    public WorldSnapshot latest() {
+        if ((middle.get() & FRESH) != 0) {
+            front = middle.getAndSet(front) & INDEX_MASK;
+        }
+        return snapshots[front];
+    }
+}
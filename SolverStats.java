@@ -0,0 +1,41 @@
+/**
+ * Work done by one anytime search and how good its answer is.
+ */
+public class SolverStats {
+    final long nodes;
+    final long prunes; // Branches cut by the bound, or rejected moves for local search
+    final long elapsedNanos;
+    final double bestCost;
+    final double lowerBound; // No solution can cost less than this
+    final boolean completed; // True if the search ran to the end instead of being stopped by its control
+
+    public SolverStats(long nodes, long prunes, long elapsedNanos, double bestCost, double lowerBound, boolean completed) {
+        this.nodes = nodes;
+        this.prunes = prunes;
+        this.elapsedNanos = elapsedNanos;
+        this.bestCost = bestCost;
+        this.lowerBound = lowerBound;
+        this.completed = completed;
+    }
+
+    public double nodesPerSecond() {
+        return elapsedNanos == 0 ? 0 : nodes * 1e9 / elapsedNanos;
+    }
+
+    /**
+     * Relative distance between the best solution and the lower bound. Exact searches that
+     * completed report their best cost as the bound, so their gap is 0.
+     */
+    public double gap() {
+        if (bestCost <= 0) {
+            return 0;
+        }
+        return Math.max(0, (bestCost - lowerBound) / bestCost);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("cost=%.1f bound=%.1f gap=%.2f%% nodes=%d prunes=%d nodes/s=%.0f time=%.3fms completed=%b",
+                bestCost, lowerBound, gap() * 100, nodes, prunes, nodesPerSecond(), elapsedNanos / 1e6, completed);
+    }
+}
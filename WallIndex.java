@@ -0,0 +1,197 @@
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+/**
+ * Uniform grid over the walls for fast segment blocking checks. A query only tests the walls in
+ * the cells the segment's bounding box covers, and each of those is bounding-box rejected before
+ * the exact intersection test, so hundreds of walls stay cheap per bot step.
+ * Queries reuse internal scratch state, so an index must only be used by one thread.
+ */
+public class WallIndex {
+    // Cell size in pixels
+    private static final int CELL_SIZE = 32;
+
+    private final Wall[] walls;
+
+    // Grid origin and dimensions in cells, covering the bounding box of all walls
+    private final int originX, originY, columns, rows;
+
+    // Wall indices of every cell
+    private final int[][] cellWalls;
+
+    // Query stamp per wall, so a wall spanning several cells is only tested once per query
+    private final int[] wallStamp;
+    private int stamp;
+
+    public WallIndex(List<Wall> walls) {
+        this.walls = walls.toArray(new Wall[0]);
+        wallStamp = new int[this.walls.length];
+
+        int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE, maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE;
+        for (Wall wall : this.walls) {
+            minX = Math.min(minX, Math.min(wall.startX, wall.endX));
+            minY = Math.min(minY, Math.min(wall.startY, wall.endY));
+            maxX = Math.max(maxX, Math.max(wall.startX, wall.endX));
+            maxY = Math.max(maxY, Math.max(wall.startY, wall.endY));
+        }
+        if (this.walls.length == 0) {
+            minX = minY = maxX = maxY = 0;
+        }
+        originX = minX;
+        originY = minY;
+        columns = (maxX - minX) / CELL_SIZE + 1;
+        rows = (maxY - minY) / CELL_SIZE + 1;
+
+        int[] counts = new int[columns * rows];
+        for (Wall wall : this.walls) {
+            forEachCell(wall, cell -> counts[cell]++);
+        }
+        cellWalls = new int[columns * rows][];
+        for (int cell = 0; cell < counts.length; cell++) {
+            cellWalls[cell] = new int[counts[cell]];
+        }
+        Arrays.fill(counts, 0);
+        for (int i = 0; i < this.walls.length; i++) {
+            int wallIndex = i;
+            forEachCell(this.walls[i], cell -> cellWalls[cell][counts[cell]++] = wallIndex);
+        }
+    }
+
+    public boolean isEmpty() {
+        return walls.length == 0;
+    }
+
+    /**
+     * Checks whether the segment from (x1, y1) to (x2, y2) crosses or touches any wall.
+     */
+    public boolean blocked(int x1, int y1, int x2, int y2) {
+        if (walls.length == 0) {
+            return false;
+        }
+        // Only the cells under the segment's bounding box can hold a blocking wall
+        int fromColumn = Math.max(0, floorDiv(Math.min(x1, x2) - originX));
+        int toColumn = Math.min(columns - 1, floorDiv(Math.max(x1, x2) - originX));
+        int fromRow = Math.max(0, floorDiv(Math.min(y1, y2) - originY));
+        int toRow = Math.min(rows - 1, floorDiv(Math.max(y1, y2) - originY));
+        if (fromColumn > toColumn || fromRow > toRow) {
+            return false;
+        }
+
+        stamp++;
+        for (int row = fromRow; row <= toRow; row++) {
+            for (int column = fromColumn; column <= toColumn; column++) {
+                for (int wallIndex : cellWalls[row * columns + column]) {
+                    if (wallStamp[wallIndex] == stamp) {
+                        continue;
+                    }
+                    wallStamp[wallIndex] = stamp;
+                    if (segmentIntersectsWall(x1, y1, x2, y2, walls[wallIndex])) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Same as {@link #blocked} without the scratch state, so it may be called from many threads
+     * at once. A wall spanning several cells may be tested more than once, which only costs time
+     * for long segments; meant for single bot steps.
+     */
+    public boolean blockedConcurrently(int x1, int y1, int x2, int y2) {
+        if (walls.length == 0) {
+            return false;
+        }
+        int fromColumn = Math.max(0, floorDiv(Math.min(x1, x2) - originX));
+        int toColumn = Math.min(columns - 1, floorDiv(Math.max(x1, x2) - originX));
+        int fromRow = Math.max(0, floorDiv(Math.min(y1, y2) - originY));
+        int toRow = Math.min(rows - 1, floorDiv(Math.max(y1, y2) - originY));
+        for (int row = fromRow; row <= toRow; row++) {
+            for (int column = fromColumn; column <= toColumn; column++) {
+                for (int wallIndex : cellWalls[row * columns + column]) {
+                    if (segmentIntersectsWall(x1, y1, x2, y2, walls[wallIndex])) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks whether any wall passes closer than the given radius to a point.
+     */
+    public boolean near(int x, int y, int radius) {
+        for (Wall wall : walls) {
+            double dx = wall.endX - wall.startX;
+            double dy = wall.endY - wall.startY;
+            double lengthSquared = dx * dx + dy * dy;
+            double t = lengthSquared == 0 ? 0 : ((x - wall.startX) * dx + (y - wall.startY) * dy) / lengthSquared;
+            t = Math.max(0, Math.min(1, t));
+            double px = wall.startX + t * dx - x;
+            double py = wall.startY + t * dy - y;
+            if (px * px + py * py < (double) radius * radius) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Exact segment intersection test, preceded by a bounding box reject.
+     */
+    static boolean segmentIntersectsWall(int x1, int y1, int x2, int y2, Wall wall) {
+        // Convert wall endpoints to line segment parameters
+        int x3 = wall.startX;
+        int y3 = wall.startY;
+        int x4 = wall.endX;
+        int y4 = wall.endY;
+
+        // Segments whose bounding boxes do not overlap cannot intersect
+        if (Math.max(x1, x2) < Math.min(x3, x4) || Math.min(x1, x2) > Math.max(x3, x4)
+                || Math.max(y1, y2) < Math.min(y3, y4) || Math.min(y1, y2) > Math.max(y3, y4)) {
+            return false;
+        }
+
+        // Calculate parts of the equations needed for the intersection check, in long since the
+        // products of two coordinate differences overflow an int on large panels
+        long den = (long) (x1 - x2) * (y3 - y4) - (long) (y1 - y2) * (x3 - x4);
+        if (den == 0) {
+            // Parallel: blocked only when the segment lies on the wall's own line, since the
+            // bounding boxes overlap already, so a bot can neither walk nor see along a wall
+            long wallX = x4 - x3, wallY = y4 - y3;
+            if (wallX == 0 && wallY == 0) {
+                // A wall of a single point blocks when it lies on the segment
+                return (long) (x2 - x1) * (y3 - y1) == (long) (y2 - y1) * (x3 - x1);
+            }
+            return wallX * (y1 - y3) == wallY * (x1 - x3) && wallX * (y2 - y3) == wallY * (x2 - x3);
+        }
+
+        long tNum = (long) (x1 - x3) * (y3 - y4) - (long) (y1 - y3) * (x3 - x4);
+        long uNum = -((long) (x1 - x2) * (y1 - y3) - (long) (y1 - y2) * (x1 - x3));
+
+        double t = tNum / (double) den;
+        double u = uNum / (double) den;
+
+        // If 0<=t<=1 and 0<=u<=1, the line segments intersect
+        return t >= 0 && t <= 1 && u >= 0 && u <= 1;
+    }
+
+    private void forEachCell(Wall wall, IntConsumer action) {
+        int fromColumn = (Math.min(wall.startX, wall.endX) - originX) / CELL_SIZE;
+        int toColumn = (Math.max(wall.startX, wall.endX) - originX) / CELL_SIZE;
+        int fromRow = (Math.min(wall.startY, wall.endY) - originY) / CELL_SIZE;
+        int toRow = (Math.max(wall.startY, wall.endY) - originY) / CELL_SIZE;
+        for (int row = fromRow; row <= toRow; row++) {
+            for (int column = fromColumn; column <= toColumn; column++) {
+                action.accept(row * columns + column);
+            }
+        }
+    }
+
+    private static int floorDiv(int value) {
+        return Math.floorDiv(value, CELL_SIZE);
+    }
+}
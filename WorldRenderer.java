@@ -0,0 +1,339 @@
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Stroke;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Draws world snapshots fast enough for worlds with a hundred thousand coins.
+ *
+ * The background, the walls and the uncollected coins are drawn once into a cached layer image.
+ * When coins are collected, only their spots are cleared and the coins and walls around them
+ * drawn again, so a frame costs one image copy plus the bots. The layer is redrawn from scratch
+ * only when the view, the panel size or the layout changes; coins added or walls changed during
+ * the game show up as new coin arrays or a new wall list in the snapshot. Everything outside the
+ * view is skipped, and the bots are drawn in batches of one color each instead of switching
+ * colors per bot.
+ *
+ * The view can be zoomed and panned; world coordinates map to the screen as
+ * (x - viewX) * zoom. Not thread-safe, meant to be used on the Swing thread only.
+ */
+public class WorldRenderer {
+    // Screen size of coins and bots at zoom 1, and their offset from the entity position
+    private static final int ENTITY_SIZE = 40;
+    private static final int ENTITY_OFFSET = 10;
+
+    // Wall thickness at zoom 1
+    private static final float WALL_WIDTH = 5;
+
+    // Smallest zoom at which the "$" on coins and the eyes of bots are drawn
+    private static final double DETAIL_ZOOM = 0.5;
+
+    private static final double MIN_ZOOM = 0.01, MAX_ZOOM = 20;
+
+    private static final Color BOT_COLOR = Color.BLACK;
+    private static final Color EYE_COLOR = Color.WHITE;
+    private static final Color COIN_COLOR = Color.YELLOW;
+    private static final Color COIN_MARK_COLOR = Color.BLACK;
+    private static final Color WALL_COLOR = Color.DARK_GRAY;
+    private static final Color TARGET_LINE_COLOR = Color.DARK_GRAY;
+
+    // Current view: world position of the top-left screen corner and pixels per world unit
+    private double viewX, viewY;
+    private double zoom = 1;
+
+    // Cached layer with background, walls and coins, and the view and size it was drawn for
+    private BufferedImage layer;
+    private double layerViewX, layerViewY, layerZoom;
+    private Color layerBackground;
+    private Stroke wallStroke;
+
+    // Coins as drawn in the layer: one bit per coin, set once the coin was cleared from the layer
+    private long[] layerCollected = new long[0];
+    private int layerRemaining = -1;
+
+    // Layout the layer was drawn for, compared by identity
+    private int[] layerCoinX;
+    private int layerCoinCount;
+    private List<Wall> layerWalls;
+
+    // Screen grid over the coins drawn in the layer, one cell per coin size, as linked lists of coin
+    // indices. Finds the coins overlapping the spot of a collected coin
+    private int cellSize, gridColumns, gridRows;
+    private int[] cellHead = new int[0];
+    private int[] coinNext = new int[0];
+
+    /**
+     * Zooms by a factor, keeping the world point under the given screen point in place.
+     */
+    public void zoomAt(int screenX, int screenY, double factor) {
+        double newZoom = Math.max(MIN_ZOOM, Math.min(MAX_ZOOM, zoom * factor));
+        viewX += screenX / zoom - screenX / newZoom;
+        viewY += screenY / zoom - screenY / newZoom;
+        zoom = newZoom;
+    }
+
+    /**
+     * Moves the view by a distance in screen pixels.
+     */
+    public void pan(int screenDx, int screenDy) {
+        viewX -= screenDx / zoom;
+        viewY -= screenDy / zoom;
+    }
+
+    /**
+     * Back to the unzoomed view of the top-left corner.
+     */
+    public void resetView() {
+        viewX = 0;
+        viewY = 0;
+        zoom = 1;
+    }
+
+    /**
+     * Draws a snapshot into an area of the given size.
+     */
+    public void paint(Graphics2D g, WorldSnapshot world, int width, int height, Color background) {
+        if (width <= 0 || height <= 0) {
+            return;
+        }
+        if (layer == null || layer.getWidth() != width || layer.getHeight() != height
+                || layerViewX != viewX || layerViewY != viewY || layerZoom != zoom
+                || !background.equals(layerBackground) || layerCollected.length != world.collected.length
+                || layerCoinX != world.coinX || layerCoinCount != world.coinCount || layerWalls != world.walls) {
+            drawLayer(g.getDeviceConfiguration(), world, width, height, background);
+        } else if (layerRemaining != world.remainingCoins) {
+            clearCollectedCoins(world);
+        }
+        g.drawImage(layer, 0, 0, null);
+        drawTargetLines(g, world, width, height);
+        drawBots(g, world, width, height);
+    }
+
+    /**
+     * Redraws the whole layer for the current view.
+     */
+    private void drawLayer(GraphicsConfiguration configuration, WorldSnapshot world, int width, int height, Color background) {
+        if (layer == null || layer.getWidth() != width || layer.getHeight() != height) {
+            layer = configuration != null
+                    ? configuration.createCompatibleImage(width, height, Transparency.OPAQUE)
+                    : new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        }
+        if (layerZoom != zoom || wallStroke == null) {
+            wallStroke = new BasicStroke((float) Math.max(1, WALL_WIDTH * zoom));
+        }
+        layerViewX = viewX;
+        layerViewY = viewY;
+        layerZoom = zoom;
+        layerBackground = background;
+        layerCoinX = world.coinX;
+        layerCoinCount = world.coinCount;
+        layerWalls = world.walls;
+
+        int coinCount = world.coinCount();
+        cellSize = Math.max(1, size());
+        gridColumns = width / cellSize + 2;
+        gridRows = height / cellSize + 2;
+        if (cellHead.length < gridColumns * gridRows) {
+            cellHead = new int[gridColumns * gridRows];
+        }
+        Arrays.fill(cellHead, 0, gridColumns * gridRows, -1);
+        if (coinNext.length < coinCount) {
+            coinNext = new int[coinCount];
+        }
+
+        Graphics2D g = layer.createGraphics();
+        try {
+            g.setColor(background);
+            g.fillRect(0, 0, width, height);
+            g.setColor(COIN_COLOR);
+            for (int i = 0; i < coinCount; i++) {
+                if (!world.isCollected(i) && coinVisible(world, i, width, height)) {
+                    fillCoin(g, world, i);
+                    // Indexed by the cell of the coin's top-left corner, which lies inside the grid when visible
+                    int cell = cellOf(screenX(world.coinX[i] - ENTITY_OFFSET), screenY(world.coinY[i] - ENTITY_OFFSET));
+                    coinNext[i] = cellHead[cell];
+                    cellHead[cell] = i;
+                }
+            }
+            if (zoom >= DETAIL_ZOOM) {
+                g.setColor(COIN_MARK_COLOR);
+                for (int i = 0; i < coinCount; i++) {
+                    if (!world.isCollected(i) && coinVisible(world, i, width, height)) {
+                        markCoin(g, world, i);
+                    }
+                }
+            }
+            drawWalls(g, world, width, height);
+        } finally {
+            g.dispose();
+        }
+        layerCollected = WorldSnapshot.copy(world.collected, layerCollected);
+        layerRemaining = world.remainingCoins;
+    }
+
+    /**
+     * Clears the coins collected since the layer was last updated, then draws the coins and walls
+     * that overlapped them again.
+     */
+    private void clearCollectedCoins(WorldSnapshot world) {
+        int width = layer.getWidth(), height = layer.getHeight();
+        int size = size();
+        Graphics2D g = layer.createGraphics();
+        try {
+            for (int word = 0; word < layerCollected.length; word++) {
+                long newlyCollected = world.collected[word] & ~layerCollected[word];
+                layerCollected[word] |= newlyCollected;
+                while (newlyCollected != 0) {
+                    int coinIndex = (word << 6) + Long.numberOfTrailingZeros(newlyCollected);
+                    newlyCollected &= newlyCollected - 1;
+                    if (!coinVisible(world, coinIndex, width, height)) {
+                        continue;
+                    }
+                    int left = screenX(world.coinX[coinIndex] - ENTITY_OFFSET);
+                    int top = screenY(world.coinY[coinIndex] - ENTITY_OFFSET);
+                    g.setClip(left, top, size + 1, size + 1);
+                    g.setColor(layerBackground);
+                    g.fillRect(left, top, size + 1, size + 1);
+                    redrawCoinsNear(g, world, left, top);
+                    drawWalls(g, world, width, height);
+                }
+            }
+        } finally {
+            g.dispose();
+        }
+        layerRemaining = world.remainingCoins;
+    }
+
+    /**
+     * Draws the uncollected coins whose top-left corner lies in the 3 x 3 cells around a spot,
+     * which are all the coins that can overlap a coin drawn at that spot.
+     */
+    private void redrawCoinsNear(Graphics2D g, WorldSnapshot world, int left, int top) {
+        int column = Math.floorDiv(left, cellSize) + 1, row = Math.floorDiv(top, cellSize) + 1;
+        for (int pass = 0; pass < 2; pass++) {
+            if (pass == 1 && zoom < DETAIL_ZOOM) {
+                break;
+            }
+            g.setColor(pass == 0 ? COIN_COLOR : COIN_MARK_COLOR);
+            for (int r = Math.max(0, row - 1); r <= Math.min(gridRows - 1, row + 1); r++) {
+                for (int c = Math.max(0, column - 1); c <= Math.min(gridColumns - 1, column + 1); c++) {
+                    for (int i = cellHead[r * gridColumns + c]; i != -1; i = coinNext[i]) {
+                        if ((layerCollected[i >>> 6] & (1L << i)) == 0) {
+                            if (pass == 0) {
+                                fillCoin(g, world, i);
+                            } else {
+                                markCoin(g, world, i);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private void drawWalls(Graphics2D g, WorldSnapshot world, int width, int height) {
+        g.setColor(WALL_COLOR);
+        g.setStroke(wallStroke);
+        for (Wall wall : world.walls) {
+            int x1 = screenX(wall.startX), y1 = screenY(wall.startY);
+            int x2 = screenX(wall.endX), y2 = screenY(wall.endY);
+            if (Math.max(x1, x2) >= 0 && Math.min(x1, x2) < width && Math.max(y1, y2) >= 0 && Math.min(y1, y2) < height) {
+                g.drawLine(x1, y1, x2, y2);
+            }
+        }
+    }
+
+    private void drawTargetLines(Graphics2D g, WorldSnapshot world, int width, int height) {
+        g.setColor(TARGET_LINE_COLOR);
+        for (int i = 0; i < world.botCount(); i++) {
+            int coinIndex = world.botTarget[i];
+            if (coinIndex == -1) {
+                continue;
+            }
+            int x1 = screenX(world.botX[i]), y1 = screenY(world.botY[i]);
+            int x2 = screenX(world.coinX[coinIndex]), y2 = screenY(world.coinY[coinIndex]);
+            if (Math.max(x1, x2) >= 0 && Math.min(x1, x2) < width && Math.max(y1, y2) >= 0 && Math.min(y1, y2) < height) {
+                g.drawLine(x1, y1, x2, y2);
+            }
+        }
+    }
+
+    /**
+     * Draws all visible bot bodies in one color, then all eyes in the other.
+     */
+    private void drawBots(Graphics2D g, WorldSnapshot world, int width, int height) {
+        int size = size();
+        g.setColor(BOT_COLOR);
+        for (int i = 0; i < world.botCount(); i++) {
+            int left = screenX(world.botX[i] - ENTITY_OFFSET), top = screenY(world.botY[i] - ENTITY_OFFSET);
+            if (left + size >= 0 && left < width && top + size >= 0 && top < height) {
+                if (size < 3) {
+                    g.fillRect(left, top, size, size);
+                } else {
+                    g.fillOval(left, top, size, size);
+                }
+            }
+        }
+        if (zoom < DETAIL_ZOOM) {
+            return;
+        }
+        int eye = Math.max(1, (int) Math.round(5 * zoom));
+        g.setColor(EYE_COLOR);
+        for (int i = 0; i < world.botCount(); i++) {
+            int left = screenX(world.botX[i] - 5), top = screenY(world.botY[i] - 5);
+            if (left + size >= 0 && left < width && top + size >= 0 && top < height) {
+                g.fillOval(left, top, eye, eye);
+                g.fillOval(screenX(world.botX[i] + 2), top, eye, eye);
+            }
+        }
+    }
+
+    private void fillCoin(Graphics2D g, WorldSnapshot world, int coinIndex) {
+        int size = size();
+        int left = screenX(world.coinX[coinIndex] - ENTITY_OFFSET), top = screenY(world.coinY[coinIndex] - ENTITY_OFFSET);
+        if (size < 3) {
+            g.fillRect(left, top, size, size);
+        } else {
+            g.fillOval(left, top, size, size);
+        }
+    }
+
+    private void markCoin(Graphics2D g, WorldSnapshot world, int coinIndex) {
+        g.drawString("$", screenX(world.coinX[coinIndex] - 5), screenY(world.coinY[coinIndex] + 5));
+    }
+
+    private boolean coinVisible(WorldSnapshot world, int coinIndex, int width, int height) {
+        int size = size();
+        int left = screenX(world.coinX[coinIndex] - ENTITY_OFFSET), top = screenY(world.coinY[coinIndex] - ENTITY_OFFSET);
+        return left + size >= 0 && left < width && top + size >= 0 && top < height;
+    }
+
+    /**
+     * Grid cell of a screen point; the grid has one spare cell before the screen on each axis.
+     */
+    private int cellOf(int screenX, int screenY) {
+        int column = Math.max(0, Math.min(gridColumns - 1, Math.floorDiv(screenX, cellSize) + 1));
+        int row = Math.max(0, Math.min(gridRows - 1, Math.floorDiv(screenY, cellSize) + 1));
+        return row * gridColumns + column;
+    }
+
+    /**
+     * Screen size of a coin or bot at the current zoom, at least one pixel.
+     */
+    private int size() {
+        return Math.max(1, (int) Math.round(ENTITY_SIZE * zoom));
+    }
+
+    private int screenX(double worldX) {
+        return (int) Math.floor((worldX - viewX) * zoom);
+    }
+
+    private int screenY(double worldY) {
+        return (int) Math.floor((worldY - viewY) * zoom);
+    }
+}
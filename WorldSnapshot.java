@@ -0,0 +1,71 @@
+import java.util.List;
+
+/**
+ * Everything the panel draws, copied from the engine by the simulation thread after a tick.
+ * Snapshots are handed over through a {@link SnapshotBuffer} and never change while a reader
+ * holds one. The arrays are reused for the next copy once the reader has moved on, so taking a
+ * snapshot does not allocate.
+ */
+public class WorldSnapshot {
+    // Tick the snapshot was taken at, and the score by then
+    long tick;
+    int score;
+
+    // Bot positions and the coin each bot walks to (-1 for none)
+    int[] botX = new int[0], botY = new int[0], botTarget = new int[0];
+
+    // Coin positions, shared with the world, which copies them before it changes them. The arrays
+    // may be longer than the number of coins
+    int[] coinX = new int[0], coinY = new int[0];
+    int coinCount;
+
+    // One bit per coin, set once the coin is collected or removed
+    long[] collected = new long[0];
+    int remainingCoins;
+
+    // Walls, shared with the engine, which replaces the list instead of changing it
+    List<Wall> walls = List.of();
+
+    public long getTick() {
+        return tick;
+    }
+
+    public int getScore() {
+        return score;
+    }
+
+    public int botCount() {
+        return botX.length;
+    }
+
+    public int coinCount() {
+        return coinCount;
+    }
+
+    public boolean isCollected(int coinIndex) {
+        return (collected[coinIndex >>> 6] & (1L << coinIndex)) != 0;
+    }
+
+    public boolean allCoinsCollected() {
+        return remainingCoins == 0;
+    }
+
+    /**
+     * Copies an array into a reused one, allocating only when the length differs.
+     */
+    static int[] copy(int[] source, int[] target) {
+        if (target.length != source.length) {
+            target = new int[source.length];
+        }
+        System.arraycopy(source, 0, target, 0, source.length);
+        return target;
+    }
+
+    static long[] copy(long[] source, long[] target) {
+        if (target.length != source.length) {
+            target = new long[source.length];
+        }
+        System.arraycopy(source, 0, target, 0, source.length);
+        return target;
+    }
+}
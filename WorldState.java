@@ -0,0 +1,184 @@
+import java.util.Arrays;
+
+/**
+ * Positions of every bot and coin and which coins are collected, kept in flat parallel arrays
+ * indexed by bot or coin. Per-tick loops walk these arrays directly instead of chasing one heap
+ * object per entity, and the number of coins left is counted, so the end of the game is an O(1)
+ * check. Coins can be added while the game runs: the coin arrays grow by doubling, and a slot
+ * whose coin is gone can take a new coin, so nothing allocates per tick in a steady game.
+ */
+public class WorldState {
+    // Current position of every bot
+    final int[] botX, botY;
+
+    // Position of every coin; the arrays may be longer than the number of coins
+    int[] coinX, coinY;
+    private int coinCount;
+
+    // Whether the coin arrays are also held by a scenario or snapshot; they are copied before they change
+    private boolean coinsShared;
+
+    // One bit per coin, set once the coin is collected or removed
+    private long[] collected;
+
+    // Coins not collected yet
+    private int remainingCoins;
+
+    public WorldState(int botCount, int coinCount) {
+        botX = new int[botCount];
+        botY = new int[botCount];
+        coinX = new int[coinCount];
+        coinY = new int[coinCount];
+        this.coinCount = coinCount;
+        collected = new long[(coinCount + 63) >>> 6];
+        remainingCoins = coinCount;
+    }
+
+    /**
+     * World with the given positions, none of the coins collected. The arrays are used as they are,
+     * not copied; the coin arrays are only copied once a coin is added.
+     */
+    public WorldState(int[] botX, int[] botY, int[] coinX, int[] coinY) {
+        this.botX = botX;
+        this.botY = botY;
+        this.coinX = coinX;
+        this.coinY = coinY;
+        coinCount = coinX.length;
+        coinsShared = true;
+        collected = new long[(coinX.length + 63) >>> 6];
+        remainingCoins = coinX.length;
+    }
+
+    private WorldState(WorldState other) {
+        botX = other.botX.clone();
+        botY = other.botY.clone();
+        coinX = Arrays.copyOf(other.coinX, other.coinCount);
+        coinY = Arrays.copyOf(other.coinY, other.coinCount);
+        coinCount = other.coinCount;
+        collected = Arrays.copyOf(other.collected, (coinCount + 63) >>> 6);
+        remainingCoins = other.remainingCoins;
+    }
+
+    /**
+     * Independent copy of the current state, e.g. for a solver running on another thread.
+     */
+    public WorldState copy() {
+        return new WorldState(this);
+    }
+
+    public int botCount() {
+        return botX.length;
+    }
+
+    public int coinCount() {
+        return coinCount;
+    }
+
+    public boolean isCollected(int coinIndex) {
+        return (collected[coinIndex >>> 6] & (1L << coinIndex)) != 0;
+    }
+
+    /**
+     * The collected bits, one per coin in 64-bit words. The returned array must not be modified.
+     */
+    long[] collectedWords() {
+        return collected;
+    }
+
+    /**
+     * Marks a coin as collected. Collecting a coin twice has no effect.
+     */
+    public void collect(int coinIndex) {
+        long bit = 1L << coinIndex;
+        int word = coinIndex >>> 6;
+        if ((collected[word] & bit) == 0) {
+            collected[word] |= bit;
+            remainingCoins--;
+        }
+    }
+
+    /**
+     * Adds a coin after the last one.
+     *
+     * @return index of the new coin.
+     */
+    public int addCoin(int x, int y) {
+        int coinIndex = coinCount;
+        if (coinIndex == coinX.length || coinsShared) {
+            resizeCoins(coinIndex == coinX.length ? Math.max(16, coinIndex * 2) : coinX.length);
+        }
+        if (coinIndex >>> 6 == collected.length) {
+            collected = Arrays.copyOf(collected, Math.max(1, collected.length * 2));
+        }
+        coinX[coinIndex] = x;
+        coinY[coinIndex] = y;
+        coinCount++;
+        remainingCoins++;
+        return coinIndex;
+    }
+
+    /**
+     * Puts a new coin into the slot of a collected one. Nothing may refer to the old coin anymore.
+     */
+    public void replaceCoin(int coinIndex, int x, int y) {
+        if (!isCollected(coinIndex)) {
+            throw new IllegalStateException("Coin " + coinIndex + " is still in play");
+        }
+        if (coinsShared) {
+            resizeCoins(coinX.length);
+        }
+        coinX[coinIndex] = x;
+        coinY[coinIndex] = y;
+        collected[coinIndex >>> 6] &= ~(1L << coinIndex);
+        remainingCoins++;
+    }
+
+    /**
+     * Replaces every coin and which of them are gone, e.g. with the layout of a replay keyframe.
+     * The arrays are used as they are and copied before the first change; collected needs a bit
+     * for every coin.
+     */
+    void setCoins(int[] coinX, int[] coinY, int coinCount, long[] collected) {
+        this.coinX = coinX;
+        this.coinY = coinY;
+        this.coinCount = coinCount;
+        coinsShared = true;
+        this.collected = collected;
+        remainingCoins = coinCount;
+        for (long word : collected) {
+            remainingCoins -= Long.bitCount(word);
+        }
+    }
+
+    public int remainingCoins() {
+        return remainingCoins;
+    }
+
+    public boolean allCoinsCollected() {
+        return remainingCoins == 0;
+    }
+
+    /**
+     * Copies the bot positions and collected coins into a snapshot, reusing its arrays. The snapshot
+     * shares the coin positions, which are copied before the next coin changes.
+     */
+    void copyTo(WorldSnapshot snapshot) {
+        snapshot.botX = WorldSnapshot.copy(botX, snapshot.botX);
+        snapshot.botY = WorldSnapshot.copy(botY, snapshot.botY);
+        snapshot.coinX = coinX;
+        snapshot.coinY = coinY;
+        snapshot.coinCount = coinCount;
+        coinsShared = true;
+        snapshot.collected = WorldSnapshot.copy(collected, snapshot.collected);
+        snapshot.remainingCoins = remainingCoins;
+    }
+
+    /**
+     * Moves the coin positions into new arrays of the given length, which nobody else holds.
+     */
+    private void resizeCoins(int length) {
+        coinX = Arrays.copyOf(coinX, length);
+        coinY = Arrays.copyOf(coinY, length);
+        coinsShared = false;
+    }
+}
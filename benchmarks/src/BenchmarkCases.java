@@ -0,0 +1,133 @@
+import benchmarks.EngineCases;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * The engine side of {@link EngineCases}.
+ */
+public class BenchmarkCases implements EngineCases {
+    // Tick limit of a played game, far above what any benchmarked layout needs
+    private static final long MAX_TICKS = 10_000_000;
+
+    private final long seed;
+    private final int bots, coins, width, height;
+    private final List<Wall> walls;
+
+    // Engine of the single operations
+    private final GameEngine engine;
+    private int nextBot;
+
+    // Endpoints of random segments, four ints each
+    private final int[] segments = new int[4096];
+    private int nextSegment;
+
+    // Game of the next playGame
+    private GameEngine game;
+    private String gameMode;
+
+    // Game of the next playSpawningTicks, and where its coins appear
+    private GameEngine spawningGame;
+    private Random spawnRandom;
+
+    public BenchmarkCases(long seed, int bots, int coins, int walls, int width, int height) {
+        this.seed = seed;
+        this.bots = bots;
+        this.coins = coins;
+        this.width = width;
+        this.height = height;
+        this.walls = randomWalls(seed, walls, width, height);
+        engine = new GameEngine(bots, coins, width, height, seed, this.walls);
+        Random random = new Random(seed);
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = random.nextInt(Math.min(width, height));
+        }
+    }
+
+    @Override
+    public int[] preComputeRoutes() {
+        engine.preComputeRoutesAsync().join();
+        return engine.getOptimalPath(0);
+    }
+
+    @Override
+    public int optimizeAssignments() {
+        engine.optimizeAssignments();
+        return engine.getAssignedCoin(0);
+    }
+
+    @Override
+    public int reassignNextBot() {
+        int botIndex = nextBot;
+        nextBot = (botIndex + 1) % bots;
+        engine.reassignBot(botIndex);
+        return engine.getAssignedCoin(botIndex);
+    }
+
+    @Override
+    public int wallIntersections() {
+        int s = nextSegment;
+        nextSegment = (s + 4) & (segments.length - 1);
+        int count = 0;
+        for (Wall wall : walls) {
+            if (engine.lineIntersectsWall(segments[s], segments[s + 1], segments[s + 2], segments[s + 3], wall)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public void newGame(String mode) {
+        game = new GameEngine(bots, coins, width, height, seed, walls);
+        gameMode = mode;
+    }
+
+    @Override
+    public long playGame() {
+        AssignmentMode mode = gameMode.equals("REOPTIMIZE") ? AssignmentMode.REOPTIMIZE : AssignmentMode.GREEDY;
+        return HeadlessRunner.runGame(game, seed, MAX_TICKS, gameMode.equals("EVENTS"), mode).ticks;
+    }
+
+    @Override
+    public void newSpawningGame(String mode) {
+        spawningGame = new GameEngine(bots, coins, width, height, seed, walls);
+        spawningGame.setContinuousReoptimization(mode.equals("REOPTIMIZE"));
+        spawningGame.optimizeAssignments();
+        spawnRandom = new Random(seed);
+    }
+
+    @Override
+    public int playSpawningTicks(int ticks, int spawnPerTick) {
+        for (int tick = 0; tick < ticks; tick++) {
+            for (int i = 0; i < spawnPerTick; i++) {
+                int x, y;
+                do {
+                    x = spawnRandom.nextInt(width);
+                    y = spawnRandom.nextInt(height);
+                } while (!spawningGame.canPlaceCoin(x, y));
+                spawningGame.addCoin(x, y);
+            }
+            spawningGame.updateBotPositions();
+            spawningGame.updateCoinCollections();
+        }
+        return spawningGame.getScore() / GameEngine.COIN_SCORE;
+    }
+
+    private static List<Wall> randomWalls(long seed, int count, int width, int height) {
+        Random random = new Random(seed);
+        List<Wall> walls = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int x = random.nextInt(width - 40) + 20;
+            int y = random.nextInt(height - 40) + 20;
+            // Short horizontal or vertical walls like the default ones
+            if (random.nextBoolean()) {
+                walls.add(new Wall(x, y, Math.min(width - 20, x + 20 + random.nextInt(80)), y));
+            } else {
+                walls.add(new Wall(x, y, x, Math.min(height - 20, y + 20 + random.nextInt(80))));
+            }
+        }
+        return walls;
+    }
+}
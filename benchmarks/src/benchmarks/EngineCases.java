@@ -0,0 +1,89 @@
+package benchmarks;
+
+/**
+ * The engine operations the benchmarks measure, on one layout built from a fixed seed, so runs
+ * are comparable across changes. JMH only accepts benchmark classes in a named package, and a
+ * named package cannot see the engine, which lives in the default package; the operations are
+ * therefore implemented by BenchmarkCases in the default package and reached through this
+ * interface. Every operation returns a result, which the benchmarks hand back to JMH.
+ *
+ * Usage, from the project root:
+ *   mvn -B install
+ *   mvn -B -f benchmarks/pom.xml package
+ *   java -jar benchmarks/target/benchmarks.jar -prof gc [-p bots=5,20 -p coins=10,200 -p walls=2,50]
+ * The gc profiler reports the bytes allocated per operation next to the time, which shows
+ * allocation regressions in the search paths.
+ */
+public interface EngineCases {
+    /**
+     * Builds the layout of the given seed, with random short horizontal and vertical walls.
+     */
+    static EngineCases create(long seed, int bots, int coins, int walls, int width, int height) {
+        try {
+            return (EngineCases) Class.forName("BenchmarkCases")
+                    .getConstructor(long.class, int.class, int.class, int.class, int.class, int.class)
+                    .newInstance(seed, bots, coins, walls, width, height);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot create the benchmark cases", e);
+        }
+    }
+
+    /**
+     * Solves the routes of every bot over all coins.
+     *
+     * @return route of the first bot.
+     */
+    int[] preComputeRoutes();
+
+    /**
+     * Solves the assignment of bots to coins from scratch.
+     *
+     * @return coin of the first bot.
+     */
+    int optimizeAssignments();
+
+    /**
+     * Reassigns the next bot, round robin, to its nearest free coin.
+     *
+     * @return the bot's new coin.
+     */
+    int reassignNextBot();
+
+    /**
+     * Tests the next of a fixed set of random segments against every wall.
+     *
+     * @return number of walls the segment intersects.
+     */
+    int wallIntersections();
+
+    /**
+     * Builds a new game on the layout, to be played by {@link #playGame}.
+     *
+     * @param mode TICKS to step every tick, EVENTS to jump from arrival to arrival, or
+     *             REOPTIMIZE to step every tick with continuous re-optimization.
+     */
+    void newGame(String mode);
+
+    /**
+     * Plays the game built by {@link #newGame} to the end.
+     *
+     * @return number of ticks the game took.
+     */
+    long playGame();
+
+    /**
+     * Builds a new game on the layout, to be played by {@link #playSpawningTicks}, and solves its
+     * initial assignment.
+     *
+     * @param mode GREEDY for the greedy reassignment or REOPTIMIZE for continuous re-optimization.
+     */
+    void newSpawningGame(String mode);
+
+    /**
+     * Plays the game built by {@link #newSpawningGame} for the given number of ticks, adding new
+     * coins at random free spots before every tick.
+     *
+     * @return number of coins collected so far.
+     */
+    int playSpawningTicks(int ticks, int spawnPerTick);
+}
@@ -0,0 +1,61 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Whole games on an 800 x 600 layout, from the initial assignment to the last coin: stepped
+ * every tick, jumping from event to event, and stepped with continuous re-optimization. Each
+ * game is built before its invocation, outside the measured time.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class GameBenchmark {
+    @Param("42")
+    long seed;
+
+    @Param({"5", "20"})
+    int bots;
+
+    @Param({"10", "200"})
+    int coins;
+
+    @Param({"2", "50"})
+    int walls;
+
+    @Param({"TICKS", "EVENTS", "REOPTIMIZE"})
+    String mode;
+
+    private EngineCases cases;
+
+    @Setup
+    public void createLayout() {
+        cases = EngineCases.create(seed, bots, coins, walls, 800, 600);
+    }
+
+    @Setup(Level.Invocation)
+    public void newGame() {
+        cases.newGame(mode);
+    }
+
+    @Benchmark
+    public long playGame() {
+        return cases.playGame();
+    }
+}
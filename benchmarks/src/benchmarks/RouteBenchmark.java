@@ -0,0 +1,51 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Route precomputation of every bot on an 800 x 600 layout. The searches run on the fork-join
+ * pool, so -prof gc counts their allocations as well.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RouteBenchmark {
+    @Param("42")
+    long seed;
+
+    @Param({"5", "20"})
+    int bots;
+
+    @Param({"10", "14"})
+    int coins;
+
+    @Param({"2", "50"})
+    int walls;
+
+    private EngineCases cases;
+
+    @Setup
+    public void createLayout() {
+        cases = EngineCases.create(seed, bots, coins, walls, 800, 600);
+    }
+
+    @Benchmark
+    public int[] preComputeRoutes() {
+        return cases.preComputeRoutes();
+    }
+}
@@ -0,0 +1,63 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of a large game that keeps getting new coins: 200 bots on a 4000 x 3000 layout, with
+ * 20 coins spawned before every tick, under the greedy reassignment and under continuous
+ * re-optimization. An operation is one spawned coin, so the score is spawns per second, ticks
+ * included. Each game is built and its initial assignment solved before its invocation, outside
+ * the measured time.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SpawnBenchmark {
+    private static final int TICKS = 100;
+    private static final int SPAWN_PER_TICK = 20;
+
+    @Param("42")
+    long seed;
+
+    // With many walls every tick mostly measures the planner's wall checks, not the assignment
+    @Param("2")
+    int walls;
+
+    @Param({"GREEDY", "REOPTIMIZE"})
+    String mode;
+
+    private EngineCases cases;
+
+    @Setup
+    public void createLayout() {
+        cases = EngineCases.create(seed, 200, 200, walls, 4000, 3000);
+    }
+
+    @Setup(Level.Invocation)
+    public void newGame() {
+        cases.newSpawningGame(mode);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TICKS * SPAWN_PER_TICK)
+    public int spawnCoins() {
+        return cases.playSpawningTicks(TICKS, SPAWN_PER_TICK);
+    }
+}
@@ -0,0 +1,76 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WallIndexTest {
+    private static final Wall VERTICAL = new Wall(300, 100, 300, 200);
+    private static final Wall HORIZONTAL = new Wall(100, 300, 200, 300);
+
+    @Test
+    void blocksSegmentsAlongAVerticalWall() {
+        // Straight through the wall, end-on from above and below
+        assertTrue(WallIndex.segmentIntersectsWall(300, 50, 300, 260, VERTICAL));
+        assertTrue(WallIndex.segmentIntersectsWall(300, 260, 300, 50, VERTICAL));
+        // Single steps onto either end and along the wall
+        assertTrue(WallIndex.segmentIntersectsWall(300, 99, 300, 100, VERTICAL));
+        assertTrue(WallIndex.segmentIntersectsWall(300, 201, 300, 200, VERTICAL));
+        assertTrue(WallIndex.segmentIntersectsWall(300, 150, 300, 151, VERTICAL));
+
+        // On the wall's line but short of its ends, and next to it
+        assertFalse(WallIndex.segmentIntersectsWall(300, 50, 300, 99, VERTICAL));
+        assertFalse(WallIndex.segmentIntersectsWall(300, 201, 300, 260, VERTICAL));
+        assertFalse(WallIndex.segmentIntersectsWall(301, 50, 301, 260, VERTICAL));
+    }
+
+    @Test
+    void blocksSegmentsAlongAHorizontalWall() {
+        assertTrue(WallIndex.segmentIntersectsWall(50, 300, 260, 300, HORIZONTAL));
+        assertTrue(WallIndex.segmentIntersectsWall(260, 300, 50, 300, HORIZONTAL));
+        assertTrue(WallIndex.segmentIntersectsWall(99, 300, 100, 300, HORIZONTAL));
+        assertTrue(WallIndex.segmentIntersectsWall(201, 300, 200, 300, HORIZONTAL));
+        assertTrue(WallIndex.segmentIntersectsWall(150, 300, 151, 300, HORIZONTAL));
+
+        assertFalse(WallIndex.segmentIntersectsWall(50, 300, 99, 300, HORIZONTAL));
+        assertFalse(WallIndex.segmentIntersectsWall(201, 300, 260, 300, HORIZONTAL));
+        assertFalse(WallIndex.segmentIntersectsWall(50, 299, 260, 299, HORIZONTAL));
+    }
+
+    @Test
+    void indexBlocksSegmentsAlongWalls() {
+        WallIndex index = new WallIndex(List.of(VERTICAL, HORIZONTAL));
+        assertTrue(index.blocked(300, 50, 300, 260));
+        assertTrue(index.blockedConcurrently(50, 300, 260, 300));
+        assertFalse(index.blocked(300, 50, 300, 99));
+    }
+
+    @Test
+    void intersectsWithoutOverflowOnLargePanels() {
+        Wall wall = new Wall(0, 50_000, 100_000, 50_000);
+        assertTrue(WallIndex.segmentIntersectsWall(60_000, 0, 60_000, 100_000, wall));
+        assertFalse(WallIndex.segmentIntersectsWall(60_000, 0, 60_000, 40_000, wall));
+    }
+
+    @Test
+    void botWalksAroundAWallApproachedEndOn() {
+        assertCollectsWithoutTouching(VERTICAL, 300, 50, 300, 260);
+        assertCollectsWithoutTouching(HORIZONTAL, 50, 300, 260, 300);
+    }
+
+    private static void assertCollectsWithoutTouching(Wall wall, int botX, int botY, int coinX, int coinY) {
+        Scenario scenario = new Scenario(800, 600, 1, new int[] {botX}, new int[] {botY},
+                new int[] {coinX}, new int[] {coinY}, List.of(wall));
+        GameEngine engine = new GameEngine(scenario);
+        engine.optimizeAssignments();
+        for (int tick = 0; tick < 5000 && !engine.allCoinsCollected(); tick++) {
+            int x = engine.world.botX[0], y = engine.world.botY[0];
+            engine.updateBotPositions();
+            engine.updateCoinCollections();
+            assertFalse(WallIndex.segmentIntersectsWall(x, y, engine.world.botX[0], engine.world.botY[0], wall),
+                    "step from " + x + "," + y + " touches the wall");
+        }
+        assertTrue(engine.allCoinsCollected());
+    }
+}